@@ -22,6 +22,9 @@ public class Branch {
   private String name = null;
   private String next = null;
 
+  // the unit named by next. Set when the process definition is compiled
+  private Unit nextUnit = null;
+
   protected String getName() {
     return name;
   }
@@ -30,6 +33,14 @@ public class Branch {
     return next;
   }
 
+  protected Unit getNextUnit() {
+    return nextUnit;
+  }
+
+  protected void setNextUnit(Unit nextUnit) {
+    this.nextUnit = nextUnit;
+  }
+
   protected Branch(String name, String next) {
     this.name = name;
     this.next = next;
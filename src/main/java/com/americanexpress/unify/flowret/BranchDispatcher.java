@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+import com.americanexpress.unify.jdocs.Document;
+
+/*
+ * @author Deepak Arora
+ */
+
+// A work queue used to run the branches of parallel routes on branch workers which may be running in other processes.
+// Work items and their results are documents so that they can be sent over any kind of queue. Branch workers
+// run the branches against the same data store as the process that published them
+public interface BranchDispatcher {
+
+  /**
+   * Publish a branch work item. The id of the work item is at $.branch_work.id
+   *
+   * @param work the work item
+   */
+  void publish(Document work);
+
+  /**
+   * Wait for the result of a work item published earlier
+   *
+   * @param workId    the id of the work item
+   * @param timeoutMs the maximum time in milliseconds to wait for the result
+   * @return the result of the work item as passed by the branch worker to complete or null if there was none within
+   * the timeout
+   */
+  Document awaitCompletion(String workId, long timeoutMs);
+
+  /**
+   * Called by branch workers to take the next work item
+   *
+   * @param timeoutMs the maximum time in milliseconds to wait for a work item
+   * @return the work item or null if there was none within the timeout
+   */
+  Document take(long timeoutMs);
+
+  /**
+   * Called by branch workers to pass back the result of a work item
+   *
+   * @param workId the id of the work item
+   * @param result the result of the work item
+   */
+  void complete(String workId, Document result);
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+import com.americanexpress.unify.flowret.CONSTS_FLOWRET.DAO;
+import com.americanexpress.unify.jdocs.Document;
+import com.americanexpress.unify.jdocs.JDocument;
+import com.americanexpress.unify.jdocs.UnifyException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/*
+ * @author Deepak Arora
+ */
+
+// Takes branch work items from a branch dispatcher and runs each branch till it reaches the join or pends.
+// The branch is run on a process info which has only the execution path of the branch and which is never written
+// to the data store. The resulting execution paths, the process variables updated by the branch, any ticket raised
+// and any timers and correlations set are passed back to the process waiting on the branch which merges them.
+// A work item is only run by the worker which claims it. The process waiting on the branch claims the work item
+// itself when the wait times out so that a worker taking it later does not run a branch which is run again when
+// the case is resumed
+public class BranchWorker {
+
+  private static Logger logger = LogManager.getLogger(BranchWorker.class);
+
+  // claims are never released and so are held for as long as the data store keeps them
+  private static final long CLAIM_TTL_MS = Long.MAX_VALUE / 2;
+
+  private BranchDispatcher dispatcher = null;
+  private FlowretDao dao = null;
+  private ProcessComponentFactory factory = null;
+  private EventHandler eventHandler = null;
+  private ISlaQueueManager slaQm = null;
+  private int numWorkers = 0;
+  private Thread[] workers = null;
+  private volatile boolean isRunning = false;
+
+  protected BranchWorker(BranchDispatcher dispatcher, FlowretDao dao, ProcessComponentFactory factory, EventHandler eventHandler, ISlaQueueManager slaQm, int numWorkers) {
+    this.dispatcher = dispatcher;
+    this.dao = dao;
+    this.factory = factory;
+    this.eventHandler = eventHandler;
+    this.slaQm = slaQm;
+    this.numWorkers = numWorkers;
+  }
+
+  /**
+   * Method that starts the workers
+   */
+  public synchronized void start() {
+    if (isRunning == true) {
+      return;
+    }
+
+    isRunning = true;
+    workers = new Thread[numWorkers];
+    for (int i = 0; i < numWorkers; i++) {
+      workers[i] = new Thread(() -> work(), "flowret-branch-" + i);
+      workers[i].setDaemon(true);
+      workers[i].start();
+    }
+  }
+
+  /**
+   * Method that stops the workers after they finish the branches they are running
+   */
+  public void stop() {
+    synchronized (this) {
+      if (isRunning == false) {
+        return;
+      }
+      isRunning = false;
+    }
+
+    for (Thread worker : workers) {
+      try {
+        worker.join();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void work() {
+    while (isRunning == true) {
+      Document work = dispatcher.take(100);
+      if (work == null) {
+        continue;
+      }
+
+      String workId = work.getString("$.branch_work.id");
+      if (claim(dao, workId) == false) {
+        logger.info("Case id -> " + work.getString("$.branch_work.case_id") + ", skipping work item which has timed out, work id -> " + workId + ", execution path -> " + work.getString("$.branch_work.exec_path"));
+        continue;
+      }
+
+      Document result = null;
+      try {
+        result = execute(work);
+      }
+      catch (Exception e) {
+        logger.error("Case id -> " + work.getString("$.branch_work.case_id") + ", error running branch, execution path -> " + work.getString("$.branch_work.exec_path") + ", error message -> " + e.getMessage());
+        result = new JDocument();
+        result.setString("$.branch_result.error", (e.getMessage() == null) ? e.getClass().getName() : e.getMessage());
+      }
+      result.setString("$.branch_result.id", workId);
+      dispatcher.complete(workId, result);
+    }
+  }
+
+  // claims the work item using a lease on the work id as a fence. Returns false if it has already been claimed by
+  // someone else. A data store which does not support leases does not fence work items
+  protected static boolean claim(FlowretDao dao, String workId) {
+    return dao.acquireLease(DAO.BRANCH_WORK + DAO.SEP + workId, UUID.randomUUID().toString(), CLAIM_TTL_MS) >= 0;
+  }
+
+  // builds the work item for the branch to be run starting on the given execution path
+  protected static Document getWork(String workId, String caseId, String routeName, ExecPath ep, List<ProcessVariable> pvs) {
+    Document d = new JDocument();
+    d.setString("$.branch_work.id", workId);
+    d.setString("$.branch_work.case_id", caseId);
+    d.setString("$.branch_work.route", routeName);
+    d.setString("$.branch_work.exec_path", ep.getName());
+    d.setString("$.branch_work.step", ep.getStep());
+    List<String> items = ep.getItems();
+    for (int i = 0; i < items.size(); i++) {
+      d.setArrayValueString("$.branch_work.items[%]", items.get(i), i + "");
+    }
+    Utils.setProcessVariables(d, "$.branch_work.process_variables", pvs);
+    return d;
+  }
+
+  protected Document execute(Document work) {
+    String caseId = work.getString("$.branch_work.case_id");
+    String epName = work.getString("$.branch_work.exec_path");
+
+    Document jd = dao.read(DAO.JOURNEY + DAO.SEP + caseId);
+    if (jd == null) {
+      throw new UnifyException("flowret_err_11", caseId);
+    }
+
+    Rts rts = new Rts(dao, factory, eventHandler, slaQm);
+    rts.pd = DefinitionStore.getProcessDefinition(dao, caseId, jd);
+    rts.pi = Utils.getProcessInfo(caseId, rts.pd);
+    rts.pi.isDispatched = true;
+    rts.pi.startRun();
+
+    Map<String, String> before = new HashMap<>();
+    for (ProcessVariable pv : Utils.getProcessVariables(work, "$.branch_work.process_variables")) {
+      rts.pi.setProcessVariable(pv);
+      before.put(pv.getName(), pv.getValueAsString());
+    }
+
+    // the parent execution path is shown as running so that the branch stops at the join
+    ExecPath ep = new ExecPath(epName);
+    ExecPath parentEp = new ExecPath(ep.getParentExecPathName());
+    parentEp.set(ExecPathStatus.STARTED, work.getString("$.branch_work.route"), "", UnitResponseType.OK_PROCEED);
+    rts.pi.setExecPath(parentEp);
+
+    ep.setStep(work.getString("$.branch_work.step"));
+    int size = work.getArraySize("$.branch_work.items[]");
+    for (int i = 0; i < size; i++) {
+      ep.getItems().add(work.getArrayValueString("$.branch_work.items[%]", i + ""));
+    }
+    rts.pi.setExecPath(ep);
+
+    logger.info("Case id -> " + caseId + ", running dispatched branch, execution path -> " + epName);
+    new ExecThreadTask(rts, ep).execute();
+
+    rts.pi.removeExecPath(parentEp.getName());
+    Document d = rts.pi.getDocument();
+
+    // only the process variables updated by the branch are passed back so as not to overwrite those of other branches
+    List<ProcessVariable> updated = new ArrayList<>();
+    for (ProcessVariable pv : rts.pi.getProcessVariables().getListOfProcessVariables()) {
+      if (pv.getValueAsString().equals(before.get(pv.getName())) == false) {
+        updated.add(pv);
+      }
+    }
+    Utils.setProcessVariables(d, "$.branch_result.process_variables", updated);
+
+    // as also the ones deleted by the branch
+    int i = 0;
+    ProcessVariables pvs = rts.pi.getProcessVariables();
+    for (String name : before.keySet()) {
+      if (pvs.getType(name) == null) {
+        d.setArrayValueString("$.branch_result.deleted_variables[%]", name, i + "");
+        i++;
+      }
+    }
+
+    i = 0;
+    for (Timer timer : rts.getTimers()) {
+      d.setString("$.branch_result.timers[%].id", timer.getId(), i + "");
+      d.setString("$.branch_result.timers[%].exec_path", timer.getExecPathName(), i + "");
+      d.setString("$.branch_result.timers[%].pause", timer.getPauseName(), i + "");
+      d.setLong("$.branch_result.timers[%].wake_at", timer.getWakeAt(), i + "");
+      i++;
+    }
+
+    i = 0;
+    for (Correlation corr : rts.getCorrelations()) {
+      d.setString("$.branch_result.correlations[%].key", corr.getKey(), i + "");
+      d.setString("$.branch_result.correlations[%].exec_path", corr.getExecPathName(), i + "");
+      d.setString("$.branch_result.correlations[%].step", corr.getStepName(), i + "");
+      i++;
+    }
+
+    return d;
+  }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+/*
+ * @author Deepak Arora
+ */
+
+// The limits on a single run of a case i.e. a call to start or resume the case. When a limit is reached, the case pends
+// in the work basket of the budget before running the next unit instead of continuing. A value of 0 means no limit
+public class Budget {
+
+  // the default work basket in which a case pends when its budget is exceeded
+  public static final String WORK_BASKET = "flowret_budget";
+
+  private long maxRunMs = 0;
+  private int maxUnits = 0;
+  private int maxBranches = 0;
+  private String workBasket = WORK_BASKET;
+
+  /**
+   * @param maxRunMs    the maximum time in milliseconds for which a run of the case can go on
+   * @param maxUnits    the maximum number of steps and routes that can be run in a run of the case
+   * @param maxBranches the maximum number of branches of parallel routes that can be started in a run of the case
+   * @param workBasket  the work basket in which the case pends when the budget is exceeded. Null means flowret_budget
+   */
+  public Budget(long maxRunMs, int maxUnits, int maxBranches, String workBasket) {
+    this.maxRunMs = maxRunMs;
+    this.maxUnits = maxUnits;
+    this.maxBranches = maxBranches;
+    if (workBasket != null) {
+      this.workBasket = workBasket;
+    }
+  }
+
+  public long getMaxRunMs() {
+    return maxRunMs;
+  }
+
+  public int getMaxUnits() {
+    return maxUnits;
+  }
+
+  public int getMaxBranches() {
+    return maxBranches;
+  }
+
+  public String getWorkBasket() {
+    return workBasket;
+  }
+
+  // returns the limit that has been reached before running the next unit or null if the unit can be run
+  protected String getExceededLimit(long runMs, int unitsRun, int branchesStarted, boolean isParallelRoute) {
+    if ((maxRunMs > 0) && (runMs >= maxRunMs)) {
+      return "max_run_ms";
+    }
+    if ((maxUnits > 0) && (unitsRun >= maxUnits)) {
+      return "max_units";
+    }
+    if ((isParallelRoute == true) && (maxBranches > 0) && (branchesStarted >= maxBranches)) {
+      return "max_branches";
+    }
+    return null;
+  }
+
+}
@@ -26,6 +26,18 @@ public final class CONSTS_FLOWRET {
     public static final String PROCESS_INFO = "flowret_process_info";
     public static final String JOURNEY = "flowret_journey";
     public static final String JOURNEY_SLA = "flowret_journey_sla";
+    public static final String JOURNEY_DEF = "flowret_journey_def";
+    public static final String JOURNEY_SLA_DEF = "flowret_journey_sla_def";
+    public static final String TIMER = "flowret_timer";
+    public static final String TIMER_BUCKET = "flowret_timer_bucket";
+    public static final String TIMER_INDEX = "flowret_timer_index";
+    public static final String SCHEDULED_CASE = "flowret_scheduled_case";
+    public static final String CORRELATION = "flowret_correlation";
+    public static final String SIGNAL = "flowret_signal";
+    public static final String RESUME_INBOX = "flowret_resume_inbox";
+    public static final String LEASE = "flowret_lease";
+    public static final String CALL = "flowret_call";
+    public static final String BRANCH_WORK = "flowret_branch_work";
 
   }
 
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+import com.americanexpress.unify.jdocs.UnifyException;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/*
+ * @author Deepak Arora
+ */
+
+// Each case is hashed to a shard which has a single thread. Cases are started and resumed on the thread of their
+// shard and so all calls for a case are run one after the other in the order in which they were made. While a case
+// is running on its shard and has no branches running on other threads, its process info is only ever touched by
+// the shard thread and so the process info lock is not taken
+public class CaseShards {
+
+  private static final ThreadLocal<Boolean> isShardThread = ThreadLocal.withInitial(() -> false);
+
+  private ExecutorService[] shards = null;
+
+  protected CaseShards(int numShards) {
+    shards = new ExecutorService[numShards];
+    for (int i = 0; i < numShards; i++) {
+      String name = "flowret-shard-" + i;
+      shards[i] = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(() -> {
+          isShardThread.set(true);
+          r.run();
+        }, name);
+        t.setDaemon(true);
+        return t;
+      });
+    }
+  }
+
+  protected static boolean isShardThread() {
+    return isShardThread.get();
+  }
+
+  protected int getShard(String caseId) {
+    return (caseId.hashCode() & Integer.MAX_VALUE) % shards.length;
+  }
+
+  // runs the call on the shard of the case and waits for it to complete. A call made on a shard thread, for example to
+  // start a child case, is run right away on the same thread as waiting on another shard could lead to a deadlock
+  protected <T> T run(String caseId, Supplier<T> call) {
+    if (isShardThread() == true) {
+      return call.get();
+    }
+
+    Future<T> future = shards[getShard(caseId)].submit(() -> call.get());
+    try {
+      return future.get();
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException)e.getCause();
+      }
+      throw new UnifyException("flowret_err_5", e.getCause(), caseId);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new UnifyException("flowret_err_5", e, caseId);
+    }
+  }
+
+  protected void stop() {
+    for (ExecutorService shard : shards) {
+      shard.shutdown();
+    }
+    for (ExecutorService shard : shards) {
+      try {
+        shard.awaitTermination(5, TimeUnit.MINUTES);
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+/*
+ * @author Deepak Arora
+ */
+public class ChildCase {
+
+  private String caseId = null;
+  private String journeyJson = null;
+  private ProcessVariables processVariables = null;
+  private String journeySlaJson = null;
+
+  public ChildCase(String caseId, String journeyJson, ProcessVariables processVariables, String journeySlaJson) {
+    this.caseId = caseId;
+    this.journeyJson = journeyJson;
+    this.processVariables = processVariables;
+    this.journeySlaJson = journeySlaJson;
+  }
+
+  public String getCaseId() {
+    return caseId;
+  }
+
+  public String getJourneyJson() {
+    return journeyJson;
+  }
+
+  public ProcessVariables getProcessVariables() {
+    return processVariables;
+  }
+
+  public String getJourneySlaJson() {
+    return journeySlaJson;
+  }
+
+}
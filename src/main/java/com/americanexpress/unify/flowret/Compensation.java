@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+/*
+ * @author Deepak Arora
+ */
+public class Compensation {
+
+  // the step which completed and the execution path on which it ran
+  private String stepName = null;
+  private String execPathName = null;
+
+  // the name of the compensating component of the step
+  private String componentName = null;
+
+  private volatile CompensationStatus status = CompensationStatus.PENDING;
+
+  protected Compensation(String stepName, String execPathName, String componentName) {
+    this.stepName = stepName;
+    this.execPathName = execPathName;
+    this.componentName = componentName;
+  }
+
+  protected String getStepName() {
+    return stepName;
+  }
+
+  protected String getExecPathName() {
+    return execPathName;
+  }
+
+  protected String getComponentName() {
+    return componentName;
+  }
+
+  protected CompensationStatus getStatus() {
+    return status;
+  }
+
+  protected void setStatus(CompensationStatus status) {
+    this.status = status;
+  }
+
+  // returns true if this compensation is to be run before or after the other one and hence cannot be run
+  // in parallel with it. Steps which have declared their reads and writes depend on each other only if
+  // one writes what the other reads or writes. Other steps depend on each other if they ran on the same
+  // execution path or on execution paths one of which is the ancestor of the other
+  protected boolean isDependent(Compensation c, ProcessDefinition pd) {
+    Step step1 = (Step)pd.getUnit(stepName);
+    Step step2 = (Step)pd.getUnit(c.getStepName());
+
+    if (step1.isDataflowDeclared() && step2.isDataflowDeclared()) {
+      for (String s : step1.getWrites()) {
+        if (step2.getReads().contains(s) || step2.getWrites().contains(s)) {
+          return true;
+        }
+      }
+      for (String s : step2.getWrites()) {
+        if (step1.getReads().contains(s)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    return execPathName.startsWith(c.getExecPathName()) || c.getExecPathName().startsWith(execPathName);
+  }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+import com.americanexpress.unify.flowret.CONSTS_FLOWRET.DAO;
+import com.americanexpress.unify.jdocs.Document;
+import com.americanexpress.unify.jdocs.JDocument;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * @author Deepak Arora
+ */
+public class Correlation {
+
+  // guards the read modify write of the correlation and signal documents
+  private static final Object lock = new Object();
+
+  private String key = null;
+  private String caseId = null;
+  private String execPathName = null;
+  private String stepName = null;
+
+  protected Correlation(String key, String caseId, String execPathName, String stepName) {
+    this.key = key;
+    this.caseId = caseId;
+    this.execPathName = execPathName;
+    this.stepName = stepName;
+  }
+
+  protected String getKey() {
+    return key;
+  }
+
+  protected String getCaseId() {
+    return caseId;
+  }
+
+  protected String getExecPathName() {
+    return execPathName;
+  }
+
+  protected String getStepName() {
+    return stepName;
+  }
+
+  // records that the case is waiting on the key. If a signal has already been received for the key, it is consumed
+  // and its process variables returned in which case the case is to be resumed right away
+  protected static List<ProcessVariable> register(FlowretDao dao, Correlation corr) {
+    synchronized (lock) {
+      String key = DAO.SIGNAL + DAO.SEP + corr.key;
+      Document sd = dao.read(key);
+      boolean isBuffered = (sd != null) && sd.getString("$.signal.status").equals("buffered");
+
+      Document d = new JDocument();
+      d.setString("$.correlation.key", corr.key);
+      d.setString("$.correlation.case_id", corr.caseId);
+      d.setString("$.correlation.exec_path", corr.execPathName);
+      d.setString("$.correlation.step", corr.stepName);
+      d.setString("$.correlation.status", (isBuffered == true) ? "consumed" : "waiting");
+      dao.write(DAO.CORRELATION + DAO.SEP + corr.key, d);
+
+      if (isBuffered == false) {
+        return null;
+      }
+
+      sd.setString("$.signal.status", "consumed");
+      dao.write(key, sd);
+      return Utils.getProcessVariables(sd, "$.signal.process_variables");
+    }
+  }
+
+  // returns the correlation of the case waiting on the key after marking it as being resumed. The correlation is
+  // marked as consumed only once the resume succeeds and reverts to waiting if it fails. A signal received while the
+  // case is being resumed is buffered. If no case is waiting, the signal is buffered, merging its process variables
+  // with those of a signal already buffered, and null returned
+  protected static Correlation consume(FlowretDao dao, String key, ProcessVariables pvs) {
+    synchronized (lock) {
+      String ckey = DAO.CORRELATION + DAO.SEP + key;
+      Document d = dao.read(ckey);
+      if ((d != null) && d.getString("$.correlation.status").equals("waiting")) {
+        Correlation corr = new Correlation(key, d.getString("$.correlation.case_id"), d.getString("$.correlation.exec_path"), d.getString("$.correlation.step"));
+        boolean isWaiting = isPended(dao, corr.caseId, corr.execPathName, corr.stepName);
+        d.setString("$.correlation.status", (isWaiting == true) ? "resuming" : "stale");
+        dao.write(ckey, d);
+        if (isWaiting == true) {
+          return corr;
+        }
+      }
+
+      String skey = DAO.SIGNAL + DAO.SEP + key;
+      Document sd = dao.read(skey);
+      Map<String, ProcessVariable> map = new HashMap<>();
+      if ((sd != null) && sd.getString("$.signal.status").equals("buffered")) {
+        for (ProcessVariable pv : Utils.getProcessVariables(sd, "$.signal.process_variables")) {
+          map.put(pv.getName(), pv);
+        }
+      }
+      for (ProcessVariable pv : pvs.getListOfProcessVariables()) {
+        map.put(pv.getName(), pv);
+      }
+
+      sd = new JDocument();
+      sd.setString("$.signal.key", key);
+      sd.setString("$.signal.status", "buffered");
+      Utils.setProcessVariables(sd, "$.signal.process_variables", new ArrayList<>(map.values()));
+      dao.write(skey, sd);
+      return null;
+    }
+  }
+
+  // called once the resume of the case on the signal has completed. If the resume failed, the correlation is made to
+  // wait again so that the signal can be delivered again. A correlation registered afresh by the resume is left as is
+  protected static void setResumed(FlowretDao dao, String key, boolean isSuccess) {
+    synchronized (lock) {
+      String ckey = DAO.CORRELATION + DAO.SEP + key;
+      Document d = dao.read(ckey);
+      if ((d != null) && d.getString("$.correlation.status").equals("resuming")) {
+        d.setString("$.correlation.status", (isSuccess == true) ? "consumed" : "waiting");
+        dao.write(ckey, d);
+      }
+    }
+  }
+
+  // a correlation is stale if the exec path which registered it has since moved on from the step. The case may be
+  // pended on other exec paths as well and so the exec path is checked on its own
+  private static boolean isPended(FlowretDao dao, String caseId, String execPathName, String stepName) {
+    Document pid = dao.read(DAO.PROCESS_INFO + DAO.SEP + caseId);
+    if ((pid == null) || Boolean.TRUE.equals(pid.getBoolean("$.process_info.is_complete"))) {
+      return false;
+    }
+
+    int size = pid.getArraySize("$.process_info.exec_paths[]");
+    for (int i = 0; i < size; i++) {
+      if (execPathName.equals(pid.getString("$.process_info.exec_paths[%].name", i + ""))) {
+        String status = pid.getString("$.process_info.exec_paths[%].status", i + "");
+        return ExecPathStatus.STARTED.toString().equalsIgnoreCase(status) && stepName.equals(pid.getString("$.process_info.exec_paths[%].step", i + ""));
+      }
+    }
+    return false;
+  }
+
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/*
+ * @author Deepak Arora
+ */
+
+// Analyzes a compiled process definition to produce its execution plan. The units reachable from the start and from
+// the steps of the tickets are found, the nesting of parallel routes is worked out using the joins found when the
+// definition was compiled and loops are found as the strongly connected components of the graph of units. Warnings
+// are raised for
+// a) loops, including those formed by tickets which move the case back into the flow run from the start, which are not
+//    bounded by a budget of the journey
+// b) persist units inside loops as they write to the data store on every pass
+// c) dynamic and for each parallel routes without a max_parallelism as they run as many branches at the same time
+//    as the route gives at run time
+// d) units which cannot be reached
+public class DefinitionAnalyzer {
+
+  private static Logger logger = LogManager.getLogger(DefinitionAnalyzer.class);
+
+  private final ProcessDefinition pd;
+  private final ExecutionPlan plan;
+  private final int count;
+
+  // for finding strongly connected components
+  private int index = 0;
+  private final int[] indexes;
+  private final int[] lowLinks;
+  private final boolean[] onStack;
+  private final Deque<Unit> stack = new ArrayDeque<>();
+  private final List<List<Unit>> loops = new ArrayList<>();
+
+  private DefinitionAnalyzer(ProcessDefinition pd) {
+    this.pd = pd;
+    this.count = pd.getUnitCount();
+    this.plan = new ExecutionPlan(count);
+    this.indexes = new int[count];
+    this.lowLinks = new int[count];
+    this.onStack = new boolean[count];
+  }
+
+  protected static ExecutionPlan analyze(ProcessDefinition pd) {
+    DefinitionAnalyzer analyzer = new DefinitionAnalyzer(pd);
+    analyzer.run();
+    for (String warning : analyzer.plan.getWarnings()) {
+      logger.warn("Journey -> {}, {}", pd.getName(), warning);
+    }
+    return analyzer.plan;
+  }
+
+  private void run() {
+    setReachable();
+    setNesting();
+    setLoops();
+    checkTickets();
+
+    for (int i = 0; i < count; i++) {
+      Unit unit = pd.getUnit(i);
+      if (plan.isReachable(unit) == false) {
+        plan.addWarning("unit -> " + unit.getName() + " cannot be reached");
+      }
+      if (isDynamic(unit) && (((Route)unit).getMaxParallelism() <= 0)) {
+        plan.addWarning("route -> " + unit.getName() + " runs all the branches it gives at the same time. Consider specifying max_parallelism");
+      }
+    }
+  }
+
+  // the units which can be moved to from the unit
+  private static List<Unit> getSuccessors(Unit unit) {
+    List<Unit> list = new ArrayList<>(2);
+    if ((unit.getNextUnit() != null) && (unit.getNextUnit() != ProcessDefinition.END)) {
+      list.add(unit.getNextUnit());
+    }
+    if (unit instanceof Route) {
+      for (Branch branch : ((Route)unit).getBranches()) {
+        if ((branch.getNextUnit() != null) && (branch.getNextUnit() != ProcessDefinition.END)) {
+          list.add(branch.getNextUnit());
+        }
+      }
+    }
+    return list;
+  }
+
+  private static boolean isParallel(Unit unit) {
+    switch (unit.getType()) {
+      case P_ROUTE:
+      case P_ROUTE_DYNAMIC:
+      case P_ROUTE_FOREACH:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static boolean isDynamic(Unit unit) {
+    return (unit.getType() == UnitType.P_ROUTE_DYNAMIC) || (unit.getType() == UnitType.P_ROUTE_FOREACH);
+  }
+
+  private void setReachable() {
+    Deque<Unit> queue = new ArrayDeque<>();
+    Unit start = pd.getUnit("start");
+    if (start != null) {
+      queue.add(start);
+    }
+    for (Ticket ticket : pd.getTickets()) {
+      if (ticket.getStepUnit() != ProcessDefinition.END) {
+        queue.add(ticket.getStepUnit());
+      }
+    }
+
+    while (queue.isEmpty() == false) {
+      Unit unit = queue.poll();
+      if (plan.isReachable(unit)) {
+        continue;
+      }
+      plan.setReachable(unit);
+      queue.addAll(getSuccessors(unit));
+    }
+  }
+
+  private void setNesting() {
+    int[] depths = new int[count];
+    int[] fanOuts = new int[count];
+    int maxDepth = 0;
+    int maxFanOut = 1;
+    for (int i = 0; i < count; i++) {
+      Unit unit = pd.getUnit(i);
+      if (isParallel(unit)) {
+        plan.setParallelRoutes(true);
+        setNesting((Route)unit, depths, fanOuts);
+        maxDepth = Math.max(maxDepth, depths[i]);
+        maxFanOut = ((maxFanOut == ExecutionPlan.UNBOUNDED) || (fanOuts[i] == ExecutionPlan.UNBOUNDED)) ? ExecutionPlan.UNBOUNDED : Math.max(maxFanOut, fanOuts[i]);
+      }
+    }
+    plan.setMaxNestingDepth(maxDepth);
+    plan.setMaxFanOut(maxFanOut);
+  }
+
+  // works out the depth of nesting and the fan out of the parallel route from the parallel routes found between the
+  // route and its join. A depth of -1 marks a route being worked out so that badly formed journeys do not recurse
+  private void setNesting(Route route, int[] depths, int[] fanOuts) {
+    int id = route.getId();
+    if (depths[id] != 0) {
+      return;
+    }
+    depths[id] = -1;
+
+    int width = (route.getType() == UnitType.P_ROUTE) ? route.getBranches().size() : route.getMaxParallelism();
+    width = (width <= 0) ? ExecutionPlan.UNBOUNDED : width;
+
+    int innerDepth = 0;
+    int innerFanOut = 1;
+    boolean[] visited = new boolean[count];
+    Deque<Unit> queue = new ArrayDeque<>(getSuccessors(route));
+    while (queue.isEmpty() == false) {
+      Unit unit = queue.poll();
+      if ((visited[unit.getId()] == true) || (unit == route.getJoin())) {
+        continue;
+      }
+      visited[unit.getId()] = true;
+
+      if (isParallel(unit) && (unit != route)) {
+        Route inner = (Route)unit;
+        setNesting(inner, depths, fanOuts);
+        if (depths[inner.getId()] > 0) {
+          innerDepth = Math.max(innerDepth, depths[inner.getId()]);
+          innerFanOut = ((innerFanOut == ExecutionPlan.UNBOUNDED) || (fanOuts[inner.getId()] == ExecutionPlan.UNBOUNDED)) ? ExecutionPlan.UNBOUNDED : Math.max(innerFanOut, fanOuts[inner.getId()]);
+        }
+      }
+      queue.addAll(getSuccessors(unit));
+    }
+
+    depths[id] = innerDepth + 1;
+    fanOuts[id] = ((width == ExecutionPlan.UNBOUNDED) || (innerFanOut == ExecutionPlan.UNBOUNDED)) ? ExecutionPlan.UNBOUNDED : width * innerFanOut;
+  }
+
+  private boolean isBounded() {
+    Budget budget = pd.getBudget();
+    return (budget != null) && ((budget.getMaxUnits() > 0) || (budget.getMaxRunMs() > 0));
+  }
+
+  private void setLoops() {
+    for (int i = 0; i < count; i++) {
+      if (indexes[i] == 0) {
+        connect(pd.getUnit(i));
+      }
+    }
+
+    for (List<Unit> loop : loops) {
+      List<String> names = new ArrayList<>();
+      for (Unit unit : loop) {
+        names.add(unit.getName());
+        if (unit.getType() == UnitType.PERSIST) {
+          plan.addWarning("persist unit -> " + unit.getName() + " is inside a loop and writes to the data store on every pass");
+        }
+      }
+      if (isBounded() == false) {
+        plan.addWarning("loop through units -> " + names + " is not bounded. Consider a budget with max_units or max_run_ms");
+      }
+    }
+  }
+
+  // Tarjan's algorithm. Units are given an index starting from 1 so that 0 means not yet visited. The depth first
+  // search keeps its own stack of frames rather than recursing so that very large journeys do not overflow the stack
+  private void connect(Unit root) {
+    Deque<Frame> frames = new ArrayDeque<>();
+    frames.push(visit(root));
+
+    while (frames.isEmpty() == false) {
+      Frame frame = frames.peek();
+      Unit unit = frame.unit;
+      int id = unit.getId();
+
+      if (frame.next < frame.successors.size()) {
+        Unit next = frame.successors.get(frame.next++);
+        int nid = next.getId();
+        if (nid == id) {
+          frame.isSelfLoop = true;
+        }
+        if (indexes[nid] == 0) {
+          frames.push(visit(next));
+        }
+        else if (onStack[nid] == true) {
+          lowLinks[id] = Math.min(lowLinks[id], indexes[nid]);
+        }
+        continue;
+      }
+
+      // all successors are done and so we return to the unit we came from
+      frames.pop();
+      if (frames.isEmpty() == false) {
+        int pid = frames.peek().unit.getId();
+        lowLinks[pid] = Math.min(lowLinks[pid], lowLinks[id]);
+      }
+
+      if (lowLinks[id] == indexes[id]) {
+        List<Unit> scc = new ArrayList<>();
+        Unit u = null;
+        do {
+          u = stack.pop();
+          onStack[u.getId()] = false;
+          scc.add(0, u);
+        } while (u != unit);
+
+        if ((scc.size() > 1) || (frame.isSelfLoop == true)) {
+          loops.add(scc);
+        }
+      }
+    }
+  }
+
+  private Frame visit(Unit unit) {
+    int id = unit.getId();
+    indexes[id] = ++index;
+    lowLinks[id] = index;
+    stack.push(unit);
+    onStack[id] = true;
+    return new Frame(unit, getSuccessors(unit));
+  }
+
+  // a unit being visited by the depth first search along with the next of its successors to visit
+  private static class Frame {
+
+    private final Unit unit;
+    private final List<Unit> successors;
+    private int next = 0;
+    private boolean isSelfLoop = false;
+
+    private Frame(Unit unit, List<Unit> successors) {
+      this.unit = unit;
+      this.successors = successors;
+    }
+
+  }
+
+  // a ticket moves the case to its step and so forms a loop if a step which raises the ticket can be reached from
+  // the step of the ticket. Which steps raise a ticket is only known at run time. Tickets are raised by the steps of
+  // the flow run from the start whereas the steps of a ticket typically form a tail of their own which ends the case.
+  // A ticket is therefore taken to form a loop only if its step leads back to a step of the flow run from the start
+  private void checkTickets() {
+    if (isBounded() == true) {
+      return;
+    }
+
+    boolean[] isMainFlow = getReachable(pd.getUnit("start"));
+    for (Ticket ticket : pd.getTickets()) {
+      Unit target = ticket.getStepUnit();
+      if (target == ProcessDefinition.END) {
+        continue;
+      }
+
+      boolean[] visited = getReachable(target);
+      for (int i = 0; i < count; i++) {
+        Unit unit = pd.getUnit(i);
+        if ((visited[i] == true) && (isMainFlow[i] == true) && (unit instanceof Step)) {
+          plan.addWarning("ticket -> " + ticket.getName() + " moves the case back into the flow to unit -> " + target.getName() + " from where step -> " + unit.getName() + " can raise it again and is not bounded. Consider a budget with max_units or max_run_ms");
+          break;
+        }
+      }
+    }
+  }
+
+  // the units which can be reached from the given unit including the unit itself
+  private boolean[] getReachable(Unit from) {
+    boolean[] visited = new boolean[count];
+    Deque<Unit> queue = new ArrayDeque<>();
+    if ((from != null) && (from != ProcessDefinition.END)) {
+      queue.add(from);
+    }
+    while (queue.isEmpty() == false) {
+      Unit unit = queue.poll();
+      if (visited[unit.getId()] == true) {
+        continue;
+      }
+      visited[unit.getId()] = true;
+      queue.addAll(getSuccessors(unit));
+    }
+    return visited;
+  }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+import com.americanexpress.unify.jdocs.Document;
+import com.americanexpress.unify.jdocs.UnifyException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/*
+ * @author Deepak Arora
+ */
+
+// A bounded cache of parsed process definitions and SLA milestones shared across cases. Entries are keyed on the
+// SHA-256 hash of the json of the document they were parsed from, or on the key of the definition for definitions
+// stored by reference, and so cases of the same journey share the same entry irrespective of their case id. The
+// least recently used entry is evicted when the cache is full. Cached objects are never changed once parsed
+public class DefinitionCache {
+
+  private final int maxEntries;
+  private final Map<String, Entry> entries;
+
+  // metrics
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private final AtomicLong parseNanos = new AtomicLong();
+  private final AtomicLong savedNanos = new AtomicLong();
+
+  private static class Entry {
+    private final Object value;
+    private final long parseNanos;
+
+    private Entry(Object value, long parseNanos) {
+      this.value = value;
+      this.parseNanos = parseNanos;
+    }
+  }
+
+  protected DefinitionCache(int maxEntries) {
+    this.maxEntries = maxEntries;
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        if (size() > DefinitionCache.this.maxEntries) {
+          evictions.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  protected ProcessDefinition getProcessDefinition(Document d) {
+    String key = (maxEntries > 0) ? "journey|" + getHash(d.getJson()) : null;
+    return (ProcessDefinition)get(key, () -> d, Utils::getProcessDefinition);
+  }
+
+  // gets the process definition stored by reference. The definition document is read only on a miss
+  protected ProcessDefinition getProcessDefinition(String id, Supplier<Document> reader) {
+    return (ProcessDefinition)get("journey_def|" + id, reader, Utils::getProcessDefinition);
+  }
+
+  protected SlaMilestones getSlaMilestones(Document slad) {
+    if (slad == null) {
+      return null;
+    }
+    String key = (maxEntries > 0) ? "sla|" + getHash(slad.getJson()) : null;
+    return (SlaMilestones)get(key, () -> slad, SlaMilestones::new);
+  }
+
+  // gets the SLA milestones stored by reference. The definition document is read only on a miss
+  protected SlaMilestones getSlaMilestones(String id, Supplier<Document> reader) {
+    return (SlaMilestones)get("sla_def|" + id, reader, SlaMilestones::new);
+  }
+
+  // returns null if the reader returns null
+  private Object get(String key, Supplier<Document> reader, Function<Document, Object> parser) {
+    if ((key != null) && (maxEntries > 0)) {
+      synchronized (entries) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+          hits.incrementAndGet();
+          savedNanos.addAndGet(entry.parseNanos);
+          return entry.value;
+        }
+      }
+    }
+
+    Document d = reader.get();
+    if (d == null) {
+      return null;
+    }
+
+    // parsed outside the lock. Two threads missing on the same document at the same time both parse it
+    misses.incrementAndGet();
+    long start = System.nanoTime();
+    Object value = parser.apply(d);
+    long nanos = System.nanoTime() - start;
+    parseNanos.addAndGet(nanos);
+
+    if ((key != null) && (maxEntries > 0)) {
+      synchronized (entries) {
+        entries.put(key, new Entry(value, nanos));
+      }
+    }
+
+    return value;
+  }
+
+  protected static String getHash(String json) {
+    try {
+      MessageDigest md = MessageDigest.getInstance("SHA-256");
+      byte[] bytes = md.digest(json.getBytes(StandardCharsets.UTF_8));
+      StringBuilder sb = new StringBuilder(bytes.length * 2);
+      for (byte b : bytes) {
+        sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return sb.toString();
+    }
+    catch (NoSuchAlgorithmException e) {
+      // should never happen as SHA-256 is always available
+      throw new UnifyException("flowret_err_7", e);
+    }
+  }
+
+  /**
+   * @return the number of entries in the cache
+   */
+  public int getSize() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  /**
+   * @return the ratio of hits to lookups or 0 if there have been no lookups
+   */
+  public double getHitRate() {
+    long h = hits.get();
+    long total = h + misses.get();
+    return (total == 0) ? 0 : (double)h / total;
+  }
+
+  /**
+   * @return the total time in milliseconds spent parsing documents on misses
+   */
+  public long getParseMs() {
+    return parseNanos.get() / 1000000;
+  }
+
+  /**
+   * @return the total time in milliseconds saved by hits going by the time the entries took to parse
+   */
+  public long getParseMsSaved() {
+    return savedNanos.get() / 1000000;
+  }
+
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+import com.americanexpress.unify.jdocs.Document;
+import com.americanexpress.unify.jdocs.JDocument;
+import com.americanexpress.unify.jdocs.UnifyException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/*
+ * @author Deepak Arora
+ */
+
+// Holds the journeys, and their SLA configurations, from which cases can be started by name. Each journey is parsed,
+// validated and compiled once when it is registered. A version of a journey never changes once registered and
+// registering a new version makes it the latest version of the journey. Journeys are registered by the application
+// or loaded from a directory in which case the directory is watched and new versions are published as the files
+// are changed without having to restart. In a directory, the SLA configuration of the journey in file <name>.json is
+// read from the file <name>_sla.json if present
+public class DefinitionRegistry {
+
+  private static Logger logger = LogManager.getLogger(DefinitionRegistry.class);
+
+  private static final String SLA_SUFFIX = "_sla.json";
+
+  private String dirPath = null;
+  private Thread watcher = null;
+  private WatchService watchService = null;
+  private volatile boolean isRunning = false;
+
+  // the registered journeys keyed on name. The map and the versions in it are never changed but are replaced
+  // as a whole when a version is registered so that readers always see a consistent set of versions without locking
+  private volatile Map<String, Versions> journeys = Collections.emptyMap();
+
+  // a registered version of a journey
+  protected static class Definition {
+    private final String name;
+    private final String version;
+    private final Document journey;
+    private final ProcessDefinition pd;
+    private final Document sla;
+    private final SlaMilestones slaMilestones;
+    private final String hash;
+
+    private Definition(String name, String version, Document journey, ProcessDefinition pd, Document sla, SlaMilestones slaMilestones, String hash) {
+      this.name = name;
+      this.version = version;
+      this.journey = journey;
+      this.pd = pd;
+      this.sla = sla;
+      this.slaMilestones = slaMilestones;
+      this.hash = hash;
+    }
+
+    protected String getName() {
+      return name;
+    }
+
+    protected String getVersion() {
+      return version;
+    }
+
+    protected Document getJourney() {
+      return journey;
+    }
+
+    protected ProcessDefinition getProcessDefinition() {
+      return pd;
+    }
+
+    protected Document getSla() {
+      return sla;
+    }
+
+    protected SlaMilestones getSlaMilestones() {
+      return slaMilestones;
+    }
+  }
+
+  private static class Versions {
+    private final Map<String, Definition> versions;
+    private final Definition latest;
+
+    private Versions(Map<String, Definition> versions, Definition latest) {
+      this.versions = versions;
+      this.latest = latest;
+    }
+  }
+
+  // dirPath can be null in which case journeys are only registered by the application
+  protected DefinitionRegistry(String dirPath) {
+    this.dirPath = dirPath;
+  }
+
+  protected synchronized void start() {
+    if ((isRunning == true) || (dirPath == null)) {
+      return;
+    }
+
+    File dir = new File(dirPath);
+    File[] files = dir.listFiles((d, name) -> name.endsWith(".json") && (name.endsWith(SLA_SUFFIX) == false));
+    if (files != null) {
+      for (File file : files) {
+        load(file.toPath());
+      }
+    }
+
+    try {
+      watchService = FileSystems.getDefault().newWatchService();
+      dir.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+    catch (IOException e) {
+      throw new UnifyException("flowret_err_21", e, dirPath);
+    }
+
+    isRunning = true;
+    watcher = new Thread(() -> watch(), "flowret-registry");
+    watcher.setDaemon(true);
+    watcher.start();
+  }
+
+  protected void stop() {
+    synchronized (this) {
+      if (isRunning == false) {
+        return;
+      }
+      isRunning = false;
+    }
+
+    try {
+      watchService.close();
+      watcher.join();
+    }
+    catch (IOException e) {
+      // nothing to do as we are stopping anyways
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void watch() {
+    while (isRunning == true) {
+      WatchKey key = null;
+      try {
+        key = watchService.take();
+      }
+      catch (ClosedWatchServiceException | InterruptedException e) {
+        break;
+      }
+
+      // a file may be reported more than once while it is being written. Each distinct journey is loaded once
+      Set<String> names = new TreeSet<>();
+      for (WatchEvent<?> event : key.pollEvents()) {
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+          continue;
+        }
+        String name = event.context().toString();
+        if (name.endsWith(SLA_SUFFIX)) {
+          names.add(name.substring(0, name.length() - SLA_SUFFIX.length()) + ".json");
+        }
+        else if (name.endsWith(".json")) {
+          names.add(name);
+        }
+      }
+      key.reset();
+
+      for (String name : names) {
+        Path path = Paths.get(dirPath, name);
+        if (Files.exists(path)) {
+          load(path);
+        }
+      }
+    }
+  }
+
+  // loads the journey from the file and its SLA configuration if present. A file which cannot be read or
+  // parsed is logged and skipped so that the versions registered earlier continue to be used
+  private void load(Path path) {
+    try {
+      String journeyJson = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+      String fileName = path.getFileName().toString();
+      Path slaPath = path.resolveSibling(fileName.substring(0, fileName.length() - ".json".length()) + SLA_SUFFIX);
+      String slaJson = Files.exists(slaPath) ? new String(Files.readAllBytes(slaPath), StandardCharsets.UTF_8) : null;
+      register(journeyJson, slaJson);
+    }
+    catch (Exception e) {
+      logger.error("Could not load journey from file -> {}, error -> {}", path, e.getMessage());
+    }
+  }
+
+  /**
+   * Register a version of a journey. The name and the version are taken from the journey. A journey without a
+   * version is registered as version 0. Registering the same version again with the same content has no effect
+   * whereas registering it with a different content is an error
+   *
+   * @param journeyJson    the journey definition
+   * @param journeySlaJson the SLA configuration. Can be null
+   */
+  public void register(String journeyJson, String journeySlaJson) {
+    Document journey = new JDocument(journeyJson);
+    Document sla = (journeySlaJson == null) ? null : new JDocument(journeySlaJson);
+    register(journey, sla);
+  }
+
+  /**
+   * Register a version of a journey read from the data store, for example a definition written when definitions
+   * are stored by reference
+   *
+   * @param dao        the data store
+   * @param journeyKey the key of the journey document
+   * @param slaKey     the key of the SLA configuration document. Can be null
+   */
+  public void register(FlowretDao dao, String journeyKey, String slaKey) {
+    Document journey = dao.read(journeyKey);
+    if (journey == null) {
+      throw new UnifyException("flowret_err_22", journeyKey);
+    }
+
+    Document sla = null;
+    if (slaKey != null) {
+      sla = dao.read(slaKey);
+      if (sla == null) {
+        throw new UnifyException("flowret_err_22", slaKey);
+      }
+    }
+
+    register(journey, sla);
+  }
+
+  private void register(Document journey, Document sla) {
+    String name = journey.getString("$.journey.name");
+    String version = journey.getString("$.journey.version");
+    version = (version == null) ? "0" : version;
+    String hash = DefinitionCache.getHash(journey.getJson()) + ((sla == null) ? "" : DefinitionCache.getHash(sla.getJson()));
+
+    // parsed through the definition cache so that resuming a case of the journey also finds it parsed
+    DefinitionCache cache = Flowret.instance().getDefinitionCache();
+    ProcessDefinition pd = cache.getProcessDefinition(journey);
+    SlaMilestones slaMilestones = (sla == null) ? null : cache.getSlaMilestones(sla);
+
+    synchronized (this) {
+      Versions versions = journeys.get(name);
+      if (versions != null) {
+        Definition def = versions.versions.get(version);
+        if (def != null) {
+          if (def.hash.equals(hash)) {
+            return;
+          }
+          throw new UnifyException("flowret_err_23", name, version);
+        }
+      }
+
+      Map<String, Definition> map = (versions == null) ? new LinkedHashMap<>() : new LinkedHashMap<>(versions.versions);
+      Definition def = new Definition(name, version, journey, pd, sla, slaMilestones, hash);
+      map.put(version, def);
+
+      Map<String, Versions> copy = new HashMap<>(journeys);
+      copy.put(name, new Versions(Collections.unmodifiableMap(map), def));
+      journeys = Collections.unmodifiableMap(copy);
+    }
+
+    logger.info("Registered journey -> {}, version -> {}", name, version);
+  }
+
+  // returns the given version of the journey or the latest one if version is null. Returns null if not registered
+  protected Definition get(String name, String version) {
+    Versions versions = journeys.get(name);
+    if (versions == null) {
+      return null;
+    }
+    return (version == null) ? versions.latest : versions.versions.get(version);
+  }
+
+  /**
+   * @param name the name of the journey
+   * @return the versions of the journey registered in the order in which they were registered
+   */
+  public Set<String> getVersions(String name) {
+    Versions versions = journeys.get(name);
+    return (versions == null) ? Collections.emptySet() : versions.versions.keySet();
+  }
+
+  /**
+   * @param name the name of the journey
+   * @return the latest version of the journey or null if the journey is not registered
+   */
+  public String getLatestVersion(String name) {
+    Versions versions = journeys.get(name);
+    return (versions == null) ? null : versions.latest.version;
+  }
+
+}
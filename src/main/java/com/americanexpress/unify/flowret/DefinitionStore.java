@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+import com.americanexpress.unify.flowret.CONSTS_FLOWRET.DAO;
+import com.americanexpress.unify.jdocs.Document;
+import com.americanexpress.unify.jdocs.JDocument;
+import com.americanexpress.unify.jdocs.UnifyException;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * @author Deepak Arora
+ */
+
+// Writes and reads the journey and SLA configuration of a case. When definitions are stored by reference, each distinct
+// journey and SLA configuration is written once as a definition document keyed on the journey name, version and
+// the hash of its content, and the journey document of the case only holds the keys of these definitions. Journey
+// documents holding the journey inline, as written when definitions are not stored by reference, are always readable
+public class DefinitionStore {
+
+  // the definitions known to be in each data store so that they are written only once
+  private static final Map<FlowretDao, Set<String>> written = Collections.synchronizedMap(new WeakHashMap<>());
+
+  // writes the journey and the SLA configuration of a new case. The SLA configuration can be null
+  protected static void write(FlowretDao dao, String caseId, Document journey, Document slad) {
+    if (Flowret.instance().isDefinitionsByReference() == false) {
+      dao.write(DAO.JOURNEY + DAO.SEP + caseId, journey);
+      if (slad != null) {
+        dao.write(DAO.JOURNEY_SLA + DAO.SEP + caseId, slad);
+      }
+      return;
+    }
+
+    String name = journey.getString("$.journey.name");
+    String version = journey.getString("$.journey.version");
+    String prefix = name + "_" + ((version == null) ? "0" : version) + "_";
+
+    Document ref = new JDocument();
+    String id = prefix + DefinitionCache.getHash(journey.getJson());
+    writeDefinition(dao, DAO.JOURNEY_DEF + DAO.SEP + id, journey);
+    ref.setString("$.journey_ref.journey", id);
+
+    if (slad != null) {
+      String slaId = prefix + DefinitionCache.getHash(slad.getJson());
+      writeDefinition(dao, DAO.JOURNEY_SLA_DEF + DAO.SEP + slaId, slad);
+      ref.setString("$.journey_ref.sla", slaId);
+    }
+
+    dao.write(DAO.JOURNEY + DAO.SEP + caseId, ref);
+  }
+
+  private static void writeDefinition(FlowretDao dao, String key, Document d) {
+    Set<String> keys = written.computeIfAbsent(dao, k -> ConcurrentHashMap.newKeySet());
+    if (keys.contains(key)) {
+      return;
+    }
+
+    // definitions are never changed once written and so writing the same definition again from another node is harmless
+    if (dao.read(key) == null) {
+      dao.write(key, d);
+    }
+    keys.add(key);
+  }
+
+  // returns the process definition given the journey document of the case
+  protected static ProcessDefinition getProcessDefinition(FlowretDao dao, String caseId, Document d) {
+    DefinitionCache cache = Flowret.instance().getDefinitionCache();
+    String id = d.getString("$.journey_ref.journey");
+    if (id == null) {
+      return cache.getProcessDefinition(d);
+    }
+
+    ProcessDefinition pd = cache.getProcessDefinition(id, () -> dao.read(DAO.JOURNEY_DEF + DAO.SEP + id));
+    if (pd == null) {
+      throw new UnifyException("flowret_err_18", id, caseId);
+    }
+    return pd;
+  }
+
+  // returns the SLA milestones given the journey document of the case or null if the case has no SLA configuration
+  protected static SlaMilestones getSlaMilestones(FlowretDao dao, String caseId, Document d) {
+    DefinitionCache cache = Flowret.instance().getDefinitionCache();
+    if (d.pathExists("$.journey_ref") == false) {
+      return cache.getSlaMilestones(dao.read(DAO.JOURNEY_SLA + DAO.SEP + caseId));
+    }
+
+    String id = d.getString("$.journey_ref.sla");
+    if (id == null) {
+      return null;
+    }
+
+    SlaMilestones milestones = cache.getSlaMilestones(id, () -> dao.read(DAO.JOURNEY_SLA_DEF + DAO.SEP + id));
+    if (milestones == null) {
+      throw new UnifyException("flowret_err_18", id, caseId);
+    }
+    return milestones;
+  }
+
+}
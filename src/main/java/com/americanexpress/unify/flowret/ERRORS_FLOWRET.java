@@ -40,6 +40,18 @@ public class ERRORS_FLOWRET extends ErrorMap {
     map.put("flowret_err_9", "A parallel route cannot have next specified");
     map.put("flowret_err_10", "A dynamic parallel route cannot have branches specified");
     map.put("flowret_err_11", "Journey file for case id {0} does not exist");
+    map.put("flowret_err_12", "A for each parallel route cannot have branches specified");
+    map.put("flowret_err_13", "Invalid duration specified -> {0}");
+    map.put("flowret_err_14", "Cannot schedule a case which is already scheduled. Case id -> {0}");
+    map.put("flowret_err_15", "Interrupted while waiting for the result of branch work item -> {0}");
+    map.put("flowret_err_16", "Cannot run a case whose lease is held by someone else. Case id -> {0}");
+    map.put("flowret_err_17", "Lease lost while running case, document not written. Case id -> {0}, fencing token -> {1}");
+    map.put("flowret_err_18", "Definition {0} referenced by the journey of case id {1} does not exist");
+    map.put("flowret_err_19", "Invalid expression -> {0}, {1}");
+    map.put("flowret_err_20", "Could not evaluate expression -> {0}, {1}");
+    map.put("flowret_err_21", "Could not watch definition directory -> {0}");
+    map.put("flowret_err_22", "Definition {0} does not exist");
+    map.put("flowret_err_23", "Journey {0} version {1} is already registered with a different definition");
   }
 
 }
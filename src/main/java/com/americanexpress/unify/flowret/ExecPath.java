@@ -17,6 +17,9 @@ package com.americanexpress.unify.flowret;
 import com.americanexpress.unify.jdocs.BaseUtils;
 import com.americanexpress.unify.jdocs.ErrorTuple;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /*
  * @author Deepak Arora
  */
@@ -58,6 +61,16 @@ public class ExecPath {
 
   private ErrorTuple pendErrorTuple = new ErrorTuple();
 
+  // the items given to this execution path by a for each parallel route
+  private List<String> items = new ArrayList<>();
+
+  // the results added by the units of this execution path. When the child execution paths of a parallel
+  // route join, their results are moved to the parent execution path in the order of the branches
+  private List<String> results = new ArrayList<>();
+
+  // the id of the timer set by a pause with a wait. Cleared as soon as the execution path moves on
+  private String timerId = "";
+
   protected ExecPath(String name) {
     this.name = name;
   }
@@ -66,6 +79,15 @@ public class ExecPath {
     this.status = status;
     this.step = step;
     this.unitResponseType = unitResponseType;
+    this.timerId = "";
+  }
+
+  protected String getTimerId() {
+    return timerId;
+  }
+
+  protected void setTimerId(String timerId) {
+    this.timerId = timerId;
   }
 
   public String getPrevPendWorkBasket() {
@@ -141,4 +163,30 @@ public class ExecPath {
     return pendErrorTuple;
   }
 
+  protected List<String> getItems() {
+    return items;
+  }
+
+  protected void setItems(List<String> items) {
+    this.items = items;
+  }
+
+  protected synchronized void addResult(String result) {
+    results.add(result);
+  }
+
+  protected synchronized List<String> getResults() {
+    return new ArrayList<>(results);
+  }
+
+  protected synchronized List<String> removeResults() {
+    List<String> list = results;
+    results = new ArrayList<>();
+    return list;
+  }
+
+  protected synchronized void addResults(List<String> list) {
+    results.addAll(list);
+  }
+
 }
@@ -14,15 +14,28 @@
 
 package com.americanexpress.unify.flowret;
 
+import com.americanexpress.unify.jdocs.BaseUtils;
 import com.americanexpress.unify.jdocs.Document;
+import com.americanexpress.unify.jdocs.ErrorTuple;
+import com.americanexpress.unify.jdocs.JDocument;
 import com.americanexpress.unify.jdocs.UnifyException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 /*
  * @author Deepak Arora
@@ -45,12 +58,21 @@ public class ExecThreadTask implements Runnable {
   // want to write it again after the join or pend condition is reached and the parent thread completes
   private boolean writeAuditLog = true;
 
+  // steps of a dataflow group which have been started ahead of their turn keyed on the step name
+  private Map<String, DataflowStep> dataflowSteps = null;
+
   protected ExecThreadTask(Rts rts) {
     this.pd = rts.pd;
     this.pi = rts.pi;
     this.rts = rts;
   }
 
+  // used by a branch worker to run a branch starting on the given execution path
+  protected ExecThreadTask(Rts rts, ExecPath execPath) {
+    this(rts);
+    this.execPath = execPath;
+  }
+
   @Override
   public void run() {
     execute();
@@ -63,18 +85,24 @@ public class ExecThreadTask implements Runnable {
     }
 
     // start the recursive play of threads from here
-    String next = null;
+    Unit next = null;
     Unit unit = pd.getUnit(execPath.getStep());
     ProcessContext pc = null;
 
     outer:
     while (true) {
       if (unit == null) {
-        next = "end";
+        next = ProcessDefinition.END;
+      }
+      else if (isBudgetExceeded(unit) == true) {
+        next = null;
+        break outer;
       }
       else {
         switch (unit.getType()) {
-          case STEP: {
+          case STEP:
+          case STREAM:
+          case CALL: {
             next = processStep((Step)unit);
 
             if (next == null) {
@@ -84,7 +112,8 @@ public class ExecThreadTask implements Runnable {
           }
 
           case P_ROUTE:
-          case P_ROUTE_DYNAMIC: {
+          case P_ROUTE_DYNAMIC:
+          case P_ROUTE_FOREACH: {
             next = processParallelRoute((Route)unit);
 
             try {
@@ -102,7 +131,7 @@ public class ExecThreadTask implements Runnable {
                         rts.invokeEventHandler(EventType.ON_TICKET_RAISED, pc);
 
                         // we set next, clear out ticket and proceed
-                        next = ticket.getStep();
+                        next = getTicketStep(ticket);
                         pi.getSetter().setTicket("");
                       }
                       else {
@@ -119,7 +148,7 @@ public class ExecThreadTask implements Runnable {
                         ep.set(ExecPathStatus.STARTED, ticket.getStep(), "", UnitResponseType.OK_PROCEED);
                         execPath = ep;
                         pi.setExecPath(ep);
-                        next = ticket.getStep();
+                        next = getTicketStep(ticket);
                         pi.getSetter().setTicket("");
                       }
                     }
@@ -181,7 +210,7 @@ public class ExecThreadTask implements Runnable {
         }
       }
 
-      if (next.equalsIgnoreCase("end") == false) {
+      if (next != ProcessDefinition.END) {
         writeProcessInfoAndAuditLog(pi, unit);
       }
       else {
@@ -198,9 +227,11 @@ public class ExecThreadTask implements Runnable {
         break outer;
       }
 
-      unit = pd.getUnit(next);
+      unit = next;
     }
 
+    discardDataflowSteps();
+
     if (isRootThread == true) {
       if (next == null) {
         if (pi.getTicket().isEmpty() == false) {
@@ -212,7 +243,7 @@ public class ExecThreadTask implements Runnable {
         rts.invokeEventHandler(EventType.ON_PROCESS_PEND, pc);
       }
       else {
-        if (next.equalsIgnoreCase("end")) {
+        if (next == ProcessDefinition.END) {
           pc = ProcessContext.forEvent(EventType.ON_PROCESS_COMPLETE, rts, execPath.getName());
           rts.invokeEventHandler(EventType.ON_PROCESS_COMPLETE, pc);
         }
@@ -279,7 +310,7 @@ public class ExecThreadTask implements Runnable {
 
           // assign just one exec path to start with
           ep = new ExecPath(".");
-          ep.set(ExecPathStatus.STARTED, ticket.getStep(), "", null);
+          ep.set(ExecPathStatus.STARTED, getTicketStep(ticket).getName(), "", null);
           pi.setExecPath(ep);
           break;
         }
@@ -334,12 +365,29 @@ public class ExecThreadTask implements Runnable {
     return ep;
   }
 
-  private String processStep(Step step) {
-    String next = null;
+  private Unit processStep(Step step) {
+    Unit next = null;
 
     logger.info("Case id -> " + pi.getCaseId() + ", executing step -> " + step.getName() + ", component -> " + step.getComponentName() + ", execution path -> " + execPath.getName());
 
-    StepResponse resp = executeStep(step);
+    StepResponse resp = null;
+    if (step.getType() == UnitType.STREAM) {
+      resp = executeStream((Stream)step);
+    }
+    else if (step.getType() == UnitType.CALL) {
+      resp = executeCall((Call)step);
+    }
+    else if (pd.isDataflow()) {
+      resp = executeDataflowStep(step);
+    }
+    else {
+      resp = executeStep(step);
+    }
+
+    if ((resp.getUnitResponseType() != UnitResponseType.OK_PROCEED) || (resp.getTicket().isEmpty() == false)) {
+      // the steps started ahead of this one are not to be run as we are not going to move ahead
+      discardDataflowSteps();
+    }
 
     try {
       pi.getLock().lock();
@@ -377,12 +425,22 @@ public class ExecThreadTask implements Runnable {
           // there is no ticket existing or raised. We do normal processing
           pi.getSetter().setPendExecPath(execPath.getName()).setTicket("");
 
+          // the step is waiting for a message. The correlation is registered once the pend has been written
+          if (resp.getCorrelationKey() != null) {
+            rts.addCorrelation(new Correlation(resp.getCorrelationKey(), pi.getCaseId(), execPath.getName(), step.getName()));
+          }
+
           break;
         }
 
         case OK_PROCEED: {
           execPath.set(ExecPathStatus.STARTED, step.getName(), "", urt);
 
+          // the effect of the step is now to be undone by a compensate ticket
+          if (step.getCompensateName() != null) {
+            pi.addCompensation(new Compensation(step.getName(), execPath.getName(), step.getCompensateName()));
+          }
+
           // again we first check if there is already a ticket set
           if (pi.getTicket().isEmpty() == false) {
             // we only need to update the process variables and terminate
@@ -405,7 +463,7 @@ public class ExecThreadTask implements Runnable {
               if (execPath.getName().equals(".")) {
                 // we only need to set next, clear out ticket and proceed
                 Ticket ticket = pd.getTicket(ticketName);
-                next = ticket.getStep();
+                next = getTicketStep(ticket);
                 pi.getSetter().setTicket("");
               }
               else {
@@ -419,7 +477,7 @@ public class ExecThreadTask implements Runnable {
                 execPath = ep;
                 pi.setExecPath(ep);
                 Ticket ticket = pd.getTicket(ticketName);
-                next = ticket.getStep();
+                next = getTicketStep(ticket);
                 pi.getSetter().setTicket("");
               }
             }
@@ -433,7 +491,7 @@ public class ExecThreadTask implements Runnable {
           }
           else {
             // no ticket is raised hence do normal processing
-            next = step.getNext();
+            next = step.getNextUnit();
           }
 
           break;
@@ -456,14 +514,14 @@ public class ExecThreadTask implements Runnable {
     return next;
   }
 
-  private String processPersist(Persist step) {
-    String next = null;
+  private Unit processPersist(Persist step) {
+    Unit next = null;
     try {
       logger.info("Case id -> " + pi.getCaseId() + ", executing persist step -> " + step.getName() + ", execution path -> " + execPath.getName());
       pi.isPendAtSameStep = false;
       rts.invokeEventHandler(EventType.ON_PERSIST, ProcessContext.forEvent(EventType.ON_PERSIST, rts, execPath.getName()));
       execPath.set(ExecPathStatus.STARTED, step.getName(), "", UnitResponseType.OK_PROCEED);
-      next = step.getNext();
+      next = step.getNextUnit();
       return next;
     }
     catch (Exception e) {
@@ -474,7 +532,7 @@ public class ExecThreadTask implements Runnable {
     }
   }
 
-  private void setChildExecPaths(Route route, List<String> branches) {
+  private void setChildExecPaths(Route route, List<String> branches, List<List<String>> chunks) {
     for (int i = 0; i < branches.size(); i++) {
       String branchName = branches.get(i);
       String execPathName = execPath.getName() + route.getName() + "." + branchName + ".";
@@ -485,12 +543,68 @@ public class ExecThreadTask implements Runnable {
       else {
         ep.set(ExecPathStatus.STARTED, route.getBranch(branchName).getNext(), "", null);
       }
+      if (chunks != null) {
+        ep.setItems(chunks.get(i));
+      }
       pi.setExecPath(ep);
     }
   }
 
-  private String processParallelRoute(Route route) {
-    String next = null;
+  // splits the items returned by a for each parallel route into chunks, one per branch
+  private static List<List<String>> getChunks(List<String> items, int chunkSize) {
+    List<List<String>> chunks = new ArrayList<>();
+    if (items == null) {
+      return chunks;
+    }
+
+    for (int i = 0; i < items.size(); i += chunkSize) {
+      chunks.add(new ArrayList<>(items.subList(i, Math.min(i + chunkSize, items.size()))));
+    }
+    return chunks;
+  }
+
+  // moves the results of the child execution paths of the route to the parent in the order of the branches
+  private void gatherResults(ExecPath parentEp, String routeName) {
+    String prefix = parentEp.getName() + routeName + ".";
+    int depth = BaseUtils.getCount(prefix, '.') + 1;
+
+    List<ExecPath> children = new ArrayList<>();
+    for (ExecPath ep : pi.getExecPaths()) {
+      if (ep.getName().startsWith(prefix) && (BaseUtils.getCount(ep.getName(), '.') == depth)) {
+        children.add(ep);
+      }
+    }
+    children.sort((ep1, ep2) -> compareBranchNames(getBranchName(ep1, prefix), getBranchName(ep2, prefix)));
+
+    for (ExecPath ep : children) {
+      parentEp.addResults(ep.removeResults());
+      ep.setItems(new ArrayList<>());
+    }
+  }
+
+  // a join sets the pend execution path to a sibling which has not yet reached it. Once all branches of the route have
+  // joined, this is cleared so that a later pend on the parent execution path is not masked by it
+  private void clearBranchPend(String prefix) {
+    if (pi.getPendExecPath().startsWith(prefix)) {
+      pi.getSetter().setPendExecPath("");
+    }
+  }
+
+  private static String getBranchName(ExecPath ep, String prefix) {
+    return ep.getName().substring(prefix.length(), ep.getName().length() - 1);
+  }
+
+  // branch names of dynamic routes are usually numbers and so we compare them as numbers where possible
+  private static int compareBranchNames(String name1, String name2) {
+    boolean isNumeric = name1.chars().allMatch(Character::isDigit) && name2.chars().allMatch(Character::isDigit);
+    if (isNumeric && (name1.length() != name2.length())) {
+      return name1.length() - name2.length();
+    }
+    return name1.compareTo(name2);
+  }
+
+  private Unit processParallelRoute(Route route) {
+    Unit next = null;
 
     logger.info("Case id -> " + pi.getCaseId() + ", executing parallel routing rule -> " + route.getName() + ", execution path -> " + execPath.getName());
 
@@ -498,6 +612,25 @@ public class ExecThreadTask implements Runnable {
 
     UnitResponseType urt = resp.getUnitResponseType();
 
+    // for a for each route, the route returns the items which we split into chunks, one per branch
+    List<String> branches = resp.getBranches();
+    List<List<String>> chunks = null;
+    if (route.getType() == UnitType.P_ROUTE_FOREACH) {
+      chunks = getChunks(branches, route.getChunkSize());
+      branches = new ArrayList<>(chunks.size());
+      for (int i = 0; i < chunks.size(); i++) {
+        branches.add(String.valueOf(i + 1));
+      }
+      logger.info("Case id -> " + pi.getCaseId() + ", for each route -> " + route.getName() + ", number of chunks -> " + chunks.size() + ", execution path -> " + execPath.getName());
+    }
+    if (branches == null) {
+      branches = new ArrayList<>();
+    }
+
+    if ((urt == UnitResponseType.OK_PROCEED) && (startBranches(route, branches.size()) == false)) {
+      return null;
+    }
+
     if ((urt == UnitResponseType.OK_PROCEED) || (urt == UnitResponseType.OK_PEND)) {
       pi.isPendAtSameStep = false;
     }
@@ -511,12 +644,12 @@ public class ExecThreadTask implements Runnable {
       execPath.setPendErrorTuple(resp.getErrorTuple());
     }
 
-    setChildExecPaths(route, resp.getBranches());
+    setChildExecPaths(route, branches, chunks);
 
     try {
       pi.getLock().lock();
       writeProcessInfo(pi, route);
-      writeAuditLog(pi, route, resp.getBranches());
+      writeAuditLog(pi, route, branches);
       writeAuditLog = false;
     }
     finally {
@@ -532,7 +665,17 @@ public class ExecThreadTask implements Runnable {
 
       case OK_PROCEED: {
 
-        String joinPoint = executeThreads(execPath, route, resp.getBranches());
+        if (branches.isEmpty() && (route.getType() == UnitType.P_ROUTE_FOREACH)) {
+          // nothing to fan out over and so we move on to the unit after the join
+          Join join = route.getJoin();
+          if (join != null) {
+            logger.info("Case id -> " + pi.getCaseId() + ", no items for for each route -> " + route.getName() + ", moving past join -> " + join.getName() + ", execution path -> " + execPath.getName());
+            next = join.getNextUnit();
+            break;
+          }
+        }
+
+        String joinPoint = executeThreads(execPath, route, branches, chunks);
 
         if (joinPoint != null) {
           // we have reached the join point and all threads that were supposed to reach the join point have completed
@@ -540,7 +683,7 @@ public class ExecThreadTask implements Runnable {
           if (pi.getTicket().isEmpty() == false) {
             if (isRootThread == true) {
               if (execPath.equals(".")) {
-                next = pd.getTicket(pi.getTicket()).getStep();
+                next = getTicketStep(pd.getTicket(pi.getTicket()));
               }
               else {
                 try {
@@ -554,7 +697,7 @@ public class ExecThreadTask implements Runnable {
                   execPath = ep;
                   pi.setExecPath(ep);
                   Ticket ticket = pd.getTicket(pi.getTicket());
-                  next = ticket.getStep();
+                  next = getTicketStep(ticket);
                   pi.getSetter().setTicket("");
                 }
                 finally {
@@ -568,8 +711,11 @@ public class ExecThreadTask implements Runnable {
             }
           }
           else {
-            Join j = (Join)pd.getUnit(joinPoint);
-            next = j.getNext();
+            Join j = route.getJoin();
+            if ((j == null) || (j.getName().equals(joinPoint) == false)) {
+              j = (Join)pd.getUnit(joinPoint);
+            }
+            next = j.getNextUnit();
           }
 
           break;
@@ -602,8 +748,8 @@ public class ExecThreadTask implements Runnable {
     return next;
   }
 
-  private String processSingularRoute(Route route) {
-    String next = null;
+  private Unit processSingularRoute(Route route) {
+    Unit next = null;
 
     logger.info("Case id -> " + pi.getCaseId() + ", executing singular routing rule -> " + route.getName() + ", execution path -> " + execPath.getName());
 
@@ -631,7 +777,7 @@ public class ExecThreadTask implements Runnable {
         case OK_PROCEED: {
           execPath.set(ExecPathStatus.STARTED, route.getName(), "", urt);
           String branchName = resp.getBranches().get(0);
-          next = route.getBranch(branchName).getNext();
+          next = route.getBranch(branchName).getNextUnit();
           break;
         }
 
@@ -654,11 +800,24 @@ public class ExecThreadTask implements Runnable {
 
   private void processPause(Pause pause) {
     logger.info("Case id -> " + pi.getCaseId() + ", executing pause step -> " + pause.getName() + ", execution path -> " + execPath.getName());
+
+    // a timed pause is persisted right away but is armed only once the pend has been written
+    Timer timer = null;
+    long wakeAt = getWakeAt(pause);
+    if (wakeAt >= 0) {
+      timer = new Timer(UUID.randomUUID().toString(), pi.getCaseId(), execPath.getName(), pause.getName(), wakeAt);
+      TimerService.persist(rts.getCaseDao(), timer);
+      rts.addTimer(timer);
+    }
+
     try {
       pi.getLock().lock();
 
       execPath.set(ExecPathStatus.STARTED, pause.getName(), pause.getName(), UnitResponseType.OK_PEND);
       execPath.setPendWorkBasket("flowret_pause");
+      if (timer != null) {
+        execPath.setTimerId(timer.getId());
+      }
       pi.getSetter().setPendExecPath(execPath.getName());
     }
     finally {
@@ -666,8 +825,37 @@ public class ExecThreadTask implements Runnable {
     }
   }
 
-  private String processJoin(Join join) {
-    String next = null;
+  // returns -1 if the pause is not to be resumed by the timer service
+  private long getWakeAt(Pause pause) {
+    if (pause.getWait() >= 0) {
+      return System.currentTimeMillis() + pause.getWait();
+    }
+
+    String var = pause.getWakeAtVar();
+    if (var == null) {
+      return -1;
+    }
+
+    ProcessVariables pvs = pi.getProcessVariables();
+    ProcessVariableType type = pvs.getType(var);
+    try {
+      if (type == ProcessVariableType.LONG) {
+        return pvs.getLong(var);
+      }
+      if (type == ProcessVariableType.STRING) {
+        return Instant.parse(pvs.getString(var)).toEpochMilli();
+      }
+    }
+    catch (DateTimeParseException e) {
+      // fall through
+    }
+
+    logger.error("Case id -> " + pi.getCaseId() + ", invalid wake up time in process variable -> " + var + ", pause -> " + pause.getName() + " will wait indefinitely");
+    return -1;
+  }
+
+  private Unit processJoin(Join join) {
+    Unit next = null;
 
     logger.info("Case id -> " + pi.getCaseId() + ", handling join for execution path -> " + execPath.getName());
 
@@ -698,9 +886,12 @@ public class ExecThreadTask implements Runnable {
         // we need to become parent and continue processing
         ExecPath parentEp = pi.getExecPath(execPath.getParentExecPathName());
         if (parentEp.getStatus() == ExecPathStatus.COMPLETED) {
+          String routeName = execPath.getName().substring(parentEp.getName().length());
+          gatherResults(parentEp, routeName.substring(0, routeName.indexOf('.')));
+          clearBranchPend(parentEp.getName() + routeName.substring(0, routeName.indexOf('.')) + ".");
           parentEp.set(ExecPathStatus.STARTED, join.getName(), "", UnitResponseType.OK_PROCEED);
           execPath = parentEp;
-          next = join.getNext();
+          next = join.getNextUnit();
         }
         else {
           // parent thread is running and will will let that thread take over and so nothing to do
@@ -717,7 +908,7 @@ public class ExecThreadTask implements Runnable {
     return next;
   }
 
-  private String executeThreads(ExecPath parentExecPath, Route route, List<String> branches) {
+  private String executeThreads(ExecPath parentExecPath, Route route, List<String> branches, List<List<String>> chunks) {
     int count = branches.size();
     ExecThreadTask[] tasks = new ExecThreadTask[count];
     Future<?>[] futures = new Future[count];
@@ -725,37 +916,73 @@ public class ExecThreadTask implements Runnable {
 
     for (int i = 0; i < count; i++) {
       String branchName = branches.get(i);
-      String next = route.getNext();
+      Unit next = null;
 
-      if (next != null) {
-        next = route.getNext();
+      if (route.getNext() != null) {
+        next = route.getNextUnit();
       }
       else {
         Branch branch = route.getBranch(branchName);
-        next = branch.getNext();
+        next = branch.getNextUnit();
       }
 
-      ExecPath ep = new ExecPath(parentExecPath.getName() + route.getName() + "." + branchName + ".");
-      ep.setStep(pd.getUnit(next).getName());
+      ExecPath ep = new ExecPath(pd.getSymbols().intern(parentExecPath.getName() + route.getName() + "." + branchName + "."));
+      ep.setStep(next.getName());
+      if (chunks != null) {
+        ep.setItems(chunks.get(i));
+      }
       ExecThreadTask in = new ExecThreadTask(rts);
       in.execPath = ep;
       tasks[i] = in;
       pi.setExecPath(ep);
     }
 
-    // start threads
-    for (int i = 0; i < count; i++) {
-      futures[i] = es.submit(tasks[i]);
+    // If the route limits the branches run at the same time, the next branch is started as each running branch is
+    // waited upon
+    int cap = route.getMaxParallelism();
+    int inFlight = ((cap > 0) && (cap < count)) ? cap : count;
+
+    // branches of a branch being run by a branch worker are run on the threads of the worker process as are the
+    // branches of a warm up case
+    BranchDispatcher dispatcher = Flowret.instance().getBranchDispatcher();
+    if ((dispatcher != null) && (pi.isEphemeral == false) && (pi.isDispatched == false) && (rts.isWarmUp == false)) {
+      pi.branchThreads.addAndGet(count);
+      Watchdog.Activity activity = Watchdog.enterWait(pi.getCaseId(), parentExecPath.getName(), route);
+      try {
+        dispatchThreads(dispatcher, route, tasks, inFlight);
+      }
+      finally {
+        Watchdog.exit(activity);
+        pi.branchThreads.addAndGet(-count);
+      }
     }
-
-    // wait for threads to finish
-    for (int i = 0; i < tasks.length; i++) {
+    else {
+      // the process info lock is always taken while branch threads are running
+      pi.branchThreads.addAndGet(count);
+      Watchdog.Activity activity = Watchdog.enterWait(pi.getCaseId(), parentExecPath.getName(), route);
       try {
-        futures[i].get();
+        // start threads
+        for (int i = 0; i < inFlight; i++) {
+          futures[i] = es.submit(tasks[i]);
+        }
+
+        // wait for threads to finish
+        for (int i = 0; i < tasks.length; i++) {
+          try {
+            futures[i].get();
+          }
+          catch (InterruptedException | ExecutionException e) {
+            // should never happen
+            throw new UnifyException("flowret_err_5", e, pi.getCaseId());
+          }
+          if (i + inFlight < count) {
+            futures[i + inFlight] = es.submit(tasks[i + inFlight]);
+          }
+        }
       }
-      catch (InterruptedException | ExecutionException e) {
-        // should never happen
-        throw new UnifyException("flowret_err_5", e, pi.getCaseId());
+      finally {
+        Watchdog.exit(activity);
+        pi.branchThreads.addAndGet(-count);
       }
     }
 
@@ -772,6 +999,14 @@ public class ExecThreadTask implements Runnable {
     }
 
     if (isPend == false) {
+      try {
+        pi.getLock().lock();
+        gatherResults(parentExecPath, route.getName());
+        clearBranchPend(parentExecPath.getName() + route.getName() + ".");
+      }
+      finally {
+        pi.getLock().unlock();
+      }
       return joinPoint;
     }
     else {
@@ -779,37 +1014,637 @@ public class ExecThreadTask implements Runnable {
     }
   }
 
+  // publishes the branches to the dispatcher and merges the results passed back by the branch workers. No more than
+  // in flight branches are published at a time. The wait for the results is bounded by the branch timeout as the
+  // lease on the case is held while waiting. A branch whose result does not arrive in time is pended
+  private void dispatchThreads(BranchDispatcher dispatcher, Route route, ExecThreadTask[] tasks, int inFlight) {
+    String[] workIds = new String[tasks.length];
+    long[] deadlines = new long[tasks.length];
+    for (int i = 0; i < inFlight; i++) {
+      workIds[i] = publishBranch(dispatcher, route, tasks[i]);
+      deadlines[i] = System.currentTimeMillis() + Flowret.instance().getBranchTimeout();
+    }
+
+    for (int i = 0; i < tasks.length; i++) {
+      Document d = dispatcher.awaitCompletion(workIds[i], Math.max(deadlines[i] - System.currentTimeMillis(), 0));
+      try {
+        pi.getLock().lock();
+        if (d == null) {
+          if (BranchWorker.claim(rts.dao, workIds[i]) == false) {
+            // a worker is already running the branch and its result will be ignored
+            logger.info("Case id -> " + pi.getCaseId() + ", timed out work item already claimed by a worker, work id -> " + workIds[i]);
+          }
+          pendBranch(tasks[i], "timed out waiting for the result of work id -> " + workIds[i]);
+        }
+        else {
+          mergeBranchResult(tasks[i], d);
+        }
+      }
+      finally {
+        pi.getLock().unlock();
+      }
+      if (i + inFlight < tasks.length) {
+        workIds[i + inFlight] = publishBranch(dispatcher, route, tasks[i + inFlight]);
+        deadlines[i + inFlight] = System.currentTimeMillis() + Flowret.instance().getBranchTimeout();
+      }
+    }
+  }
+
+  private String publishBranch(BranchDispatcher dispatcher, Route route, ExecThreadTask task) {
+    String workId = UUID.randomUUID().toString();
+    List<ProcessVariable> pvs = pi.getProcessVariables().getListOfProcessVariables();
+    logger.info("Case id -> " + pi.getCaseId() + ", dispatching branch, work id -> " + workId + ", execution path -> " + task.execPath.getName());
+    dispatcher.publish(BranchWorker.getWork(workId, pi.getCaseId(), route.getName(), task.execPath, pvs));
+    return workId;
+  }
+
+  // the branch could not be run and so we pend at the start of the branch
+  private void pendBranch(ExecThreadTask task, String error) {
+    ExecPath branchEp = task.execPath;
+    logger.info("Case id -> " + pi.getCaseId() + ", dispatched branch failed, pending at unit -> " + branchEp.getStep() + ", execution path -> " + branchEp.getName() + ", error message -> " + error);
+    branchEp.set(ExecPathStatus.STARTED, branchEp.getStep(), branchEp.getStep(), UnitResponseType.ERROR_PEND);
+    branchEp.setPendWorkBasket("flowret_error");
+    pi.getSetter().setPendExecPath(branchEp.getName());
+  }
+
+  private void mergeBranchResult(ExecThreadTask task, Document d) {
+    ExecPath branchEp = task.execPath;
+
+    String error = d.getString("$.branch_result.error");
+    if (error != null) {
+      pendBranch(task, error);
+      return;
+    }
+
+    // the result has the execution paths and compensations of the branch in the same form as the process info
+    ProcessInfo bpi = new ProcessInfo(pi.getCaseId(), pd);
+    Utils.getExecPaths(bpi, d);
+    for (ExecPath ep : bpi.getExecPaths()) {
+      if (ep.getName().startsWith(branchEp.getName())) {
+        pi.setExecPath(ep);
+        if (ep.getName().equals(branchEp.getName())) {
+          task.execPath = ep;
+        }
+      }
+    }
+
+    for (ProcessVariable pv : Utils.getProcessVariables(d, "$.branch_result.process_variables")) {
+      pi.setProcessVariable(pv);
+    }
+    int size = d.getArraySize("$.branch_result.deleted_variables[]");
+    for (int i = 0; i < size; i++) {
+      pi.getProcessVariables().remove(d.getArrayValueString("$.branch_result.deleted_variables[%]", i + ""));
+    }
+
+    // steps of the branch which are to be compensated
+    Utils.getCompensations(bpi, d);
+    for (Compensation c : bpi.getCompensations()) {
+      pi.addCompensation(c);
+    }
+
+    String s = d.getString("$.process_info.ticket");
+    if ((s != null) && (s.isEmpty() == false)) {
+      pi.getSetter().setTicketUrt(UnitResponseType.OK_PROCEED).setTicket(s);
+    }
+
+    s = d.getString("$.process_info.pend_exec_path");
+    if ((s != null) && (s.isEmpty() == false)) {
+      pi.getSetter().setPendExecPath(s);
+    }
+
+    size = d.getArraySize("$.branch_result.timers[]");
+    for (int i = 0; i < size; i++) {
+      String id = d.getString("$.branch_result.timers[%].id", i + "");
+      String epName = d.getString("$.branch_result.timers[%].exec_path", i + "");
+      String pauseName = d.getString("$.branch_result.timers[%].pause", i + "");
+      long wakeAt = d.getLong("$.branch_result.timers[%].wake_at", i + "");
+      rts.addTimer(new Timer(id, pi.getCaseId(), epName, pauseName, wakeAt));
+    }
+
+    size = d.getArraySize("$.branch_result.correlations[]");
+    for (int i = 0; i < size; i++) {
+      String key = d.getString("$.branch_result.correlations[%].key", i + "");
+      String epName = d.getString("$.branch_result.correlations[%].exec_path", i + "");
+      String stepName = d.getString("$.branch_result.correlations[%].step", i + "");
+      rts.addCorrelation(new Correlation(key, pi.getCaseId(), epName, stepName));
+    }
+  }
+
+  // checks the budget of the run before a step or route is run. If a limit has been reached, the execution path is
+  // pended at the unit with an ok_pend_eor so that the unit is run when the case is resumed
+  private boolean isBudgetExceeded(Unit unit) {
+    Budget budget = pi.getBudget();
+    if (budget == null) {
+      return false;
+    }
+
+    switch (unit.getType()) {
+      case PAUSE:
+      case PERSIST:
+      case P_JOIN:
+        return false;
+    }
+
+    boolean isParallelRoute = (unit.getType() == UnitType.P_ROUTE) || (unit.getType() == UnitType.P_ROUTE_DYNAMIC) || (unit.getType() == UnitType.P_ROUTE_FOREACH);
+    String limit = budget.getExceededLimit(pi.getRunMs(), pi.getUnitsRun(), pi.getBranchesStarted(), isParallelRoute);
+    if (limit == null) {
+      pi.addUnitRun();
+      return false;
+    }
+
+    pendOnBudget(unit, limit);
+    return true;
+  }
+
+  // counts the branches a parallel route is about to start against what is left of the budget of the run. If they
+  // do not fit, the execution path is pended at the route as for any other limit. A run which has not started any
+  // branch yet is always allowed to start the branches of the route as it could otherwise never move past it
+  private boolean startBranches(Route route, int count) {
+    Budget budget = pi.getBudget();
+    try {
+      pi.getLock().lock();
+      int started = pi.getBranchesStarted();
+      if ((budget == null) || (budget.getMaxBranches() <= 0) || (started == 0) || (started + count <= budget.getMaxBranches())) {
+        pi.addBranchesStarted(count);
+        return true;
+      }
+    }
+    finally {
+      pi.getLock().unlock();
+    }
+
+    logger.info("Case id -> " + pi.getCaseId() + ", branches to be started by route -> " + route.getName() + ", count -> " + count + ", exceed those left in the budget, max branches -> " + budget.getMaxBranches());
+    pendOnBudget(route, "max_branches");
+    return false;
+  }
+
+  private void pendOnBudget(Unit unit, String limit) {
+    Budget budget = pi.getBudget();
+    try {
+      pi.getLock().lock();
+      logger.info("Case id -> " + pi.getCaseId() + ", pending as budget exceeded -> " + limit + ", unit -> " + unit.getName() + ", run ms -> " + pi.getRunMs() + ", units run -> " + pi.getUnitsRun() + ", branches started -> " + pi.getBranchesStarted() + ", execution path -> " + execPath.getName());
+      pi.isBudgetExceeded = true;
+      execPath.set(ExecPathStatus.STARTED, unit.getName(), unit.getName(), UnitResponseType.OK_PEND_EOR);
+      execPath.setPendWorkBasket(budget.getWorkBasket());
+      if (pi.getTicket().isEmpty() == true) {
+        pi.getSetter().setPendExecPath(execPath.getName());
+      }
+    }
+    finally {
+      pi.getLock().unlock();
+    }
+  }
+
   private RouteResponse executeRule(Route route) {
-    RouteResponse rr = null;
+    if (route.getExpression() != null) {
+      return evaluateRule(route);
+    }
+
+    int attempt = 1;
+    while (true) {
+      RouteResponse rr = null;
+      boolean isException = false;
+      Watchdog.Activity activity = Watchdog.enter(pi.getCaseId(), execPath.getName(), route);
+
+      try {
+        ProcessComponentFactory factory = rts.factory;
+        ProcessContext pc = new ProcessContext(pd.getName(), pi.getCaseId(), route.getName(), route.getComponentName(), route.getUserData(), route.getType(), pi.getProcessVariables(), execPath.getName());
+        pc.setExecPath(execPath);
+        InvokableRoute rule = (InvokableRoute)factory.getObject(pc);
+        rr = rule.executeRoute();
+      }
+      catch (Exception e) {
+        isException = true;
+        rr = new RouteResponse(UnitResponseType.ERROR_PEND, null, "flowret_error");
+      }
+      finally {
+        Watchdog.exit(activity);
+      }
+
+      if (isRetry(route, attempt, rr.getUnitResponseType(), rr.getErrorTuple(), isException) == false) {
+        return rr;
+      }
+      attempt++;
+    }
+  }
 
+  // the branches of a route with an expression are given by evaluating the expression against the process variables.
+  // An expression which cannot be evaluated will give the same result every time and so is not retried
+  private RouteResponse evaluateRule(Route route) {
+    Expression expression = route.getExpression();
     try {
-      ProcessComponentFactory factory = rts.factory;
-      ProcessContext pc = new ProcessContext(pd.getName(), pi.getCaseId(), route.getName(), route.getComponentName(), route.getUserData(), route.getType(), pi.getProcessVariables(), execPath.getName());
-      InvokableRoute rule = (InvokableRoute)factory.getObject(pc);
-      rr = rule.executeRoute();
+      List<String> branches = expression.getBranches(pi.getProcessVariables());
+      if ((route.getType() == UnitType.S_ROUTE) && (branches.size() != 1)) {
+        throw new UnifyException("flowret_err_20", expression.getText(), "a singular route needs exactly one branch but got -> " + branches);
+      }
+      return new RouteResponse(UnitResponseType.OK_PROCEED, branches, null);
     }
     catch (Exception e) {
-      rr = new RouteResponse(UnitResponseType.ERROR_PEND, null, "flowret_error");
+      logger.error("Case id -> " + pi.getCaseId() + ", error evaluating expression of route -> " + route.getName() + ", execution path -> " + execPath.getName() + ", error -> " + e.getMessage());
+      return new RouteResponse(UnitResponseType.ERROR_PEND, null, "flowret_error");
+    }
+  }
+
+  // we retry while the case is still in memory rather than pending and having the application resume the case
+  // returns true if the unit is to be invoked again in which case the backoff wait has already been done
+  private boolean isRetry(Unit unit, int attempt, UnitResponseType urt, ErrorTuple et, boolean isException) {
+    RetryPolicy policy = unit.getRetryPolicy();
+    if ((policy == null) || (urt != UnitResponseType.ERROR_PEND) || (attempt >= policy.getMaxAttempts())) {
+      return false;
+    }
+
+    // exceptions are always retried whereas error pends are retried only if the application says so
+    if ((isException == false) && ((et == null) || (et.isRetryable() == false))) {
+      return false;
+    }
+
+    long delay = policy.getDelay(attempt);
+    logger.info("Case id -> " + pi.getCaseId() + ", retrying unit -> " + unit.getName() + ", component -> " + unit.getComponentName() + ", attempt -> " + (attempt + 1) + ", after ms -> " + delay + ", execution path -> " + execPath.getName());
+    try {
+      Thread.sleep(delay);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
     }
 
-    return rr;
+    return true;
   }
 
   private StepResponse executeStep(Step step) {
+    return executeStep(step, pi.getProcessVariables());
+  }
+
+  private StepResponse executeStep(Step step, ProcessVariables pvs) {
+    int attempt = 1;
+    while (true) {
+      StepResponse sr = null;
+      boolean isException = false;
+      Watchdog.Activity activity = Watchdog.enter(pi.getCaseId(), execPath.getName(), step);
+
+      try {
+        ProcessComponentFactory factory = rts.factory;
+        ProcessContext pc = new ProcessContext(pd.getName(), pi.getCaseId(), step.getName(), step.getComponentName(), step.getUserData(), UnitType.STEP, pvs, execPath.getName());
+        pc.setExecPath(execPath);
+        InvokableStep iStep = (InvokableStep)factory.getObject(pc);
+        sr = iStep.executeStep();
+      }
+      catch (Exception e) {
+        isException = true;
+        sr = new StepResponse(UnitResponseType.ERROR_PEND, null, "flowret_error");
+      }
+      finally {
+        Watchdog.exit(activity);
+      }
+
+      if (isRetry(step, attempt, sr.getUnitResponseType(), sr.getErrorTuple(), isException) == false) {
+        return sr;
+      }
+      attempt++;
+    }
+  }
+
+  // returns the step to move to for the ticket after running the compensations if the ticket asks for it
+  private Unit getTicketStep(Ticket ticket) {
+    if (ticket.isCompensate()) {
+      compensate(ticket);
+    }
+    return ticket.getStepUnit();
+  }
+
+  // runs the compensating components of the completed steps in reverse order of their dependencies.
+  // A compensation is placed in the wave after the latest of the compensations of the steps that depend on it
+  // and the compensations of a wave are run in parallel. We stop at the first wave with a failure so
+  // that a compensation is never run before the ones it depends on. The ones not run remain pending
+  // and are run the next time a compensate ticket is raised
+  private void compensate(Ticket ticket) {
+    List<Compensation> list = new ArrayList<>();
+    for (Compensation c : pi.getCompensations()) {
+      if (c.getStatus() != CompensationStatus.COMPLETED) {
+        list.add(c);
+      }
+    }
+    if (list.isEmpty()) {
+      return;
+    }
+
+    int[] waves = new int[list.size()];
+    int maxWave = 0;
+    for (int i = list.size() - 1; i >= 0; i--) {
+      for (int j = i + 1; j < list.size(); j++) {
+        if ((waves[j] + 1 > waves[i]) && list.get(i).isDependent(list.get(j), pd)) {
+          waves[i] = waves[j] + 1;
+        }
+      }
+      maxWave = Math.max(maxWave, waves[i]);
+    }
+
+    logger.info("Case id -> " + pi.getCaseId() + ", running compensations for ticket -> " + ticket.getName() + ", count -> " + list.size() + ", waves -> " + (maxWave + 1));
+
+    for (int wave = 0; wave <= maxWave; wave++) {
+      List<Compensation> wlist = new ArrayList<>();
+      for (int i = 0; i < list.size(); i++) {
+        if (waves[i] == wave) {
+          wlist.add(list.get(i));
+        }
+      }
+
+      if (runCompensations(wlist, ticket.getMaxConcurrency()) == false) {
+        logger.info("Case id -> " + pi.getCaseId() + ", compensation failed, stopping at wave -> " + (wave + 1) + ", ticket -> " + ticket.getName());
+        break;
+      }
+    }
+  }
+
+  // runs the compensations using at most max concurrency threads each of which takes the next compensation
+  // as soon as it is done with the previous one. Returns false if any of them failed
+  private boolean runCompensations(List<Compensation> list, int maxConcurrency) {
+    Queue<Compensation> queue = new ConcurrentLinkedQueue<>(list);
+    ExecutorService es = Flowret.instance().getExecutorService();
+    List<FutureTask<Void>> tasks = new ArrayList<>();
+
+    int lanes = Math.min(maxConcurrency, list.size());
+    for (int i = 0; i < lanes; i++) {
+      FutureTask<Void> task = new FutureTask<>(() -> {
+        Compensation c = null;
+        while ((c = queue.poll()) != null) {
+          executeCompensation(c);
+        }
+      }, null);
+      tasks.add(task);
+      if (i > 0) {
+        es.execute(task);
+      }
+    }
+
+    // the first lane is always run by this thread
+    for (FutureTask<Void> task : tasks) {
+      Utils.runOrAwait(task, pi.getCaseId());
+    }
+
+    boolean isOk = true;
+    for (Compensation c : list) {
+      if (c.getStatus() != CompensationStatus.COMPLETED) {
+        isOk = false;
+      }
+    }
+    return isOk;
+  }
+
+  private void executeCompensation(Compensation c) {
+    Step step = (Step)pd.getUnit(c.getStepName());
     StepResponse sr = null;
+    Watchdog.Activity activity = Watchdog.enter(pi.getCaseId(), c.getExecPathName(), step);
+
     try {
+      logger.info("Case id -> " + pi.getCaseId() + ", executing compensation for step -> " + c.getStepName() + ", component -> " + c.getComponentName() + ", execution path -> " + c.getExecPathName());
       ProcessComponentFactory factory = rts.factory;
-      ProcessContext pc = new ProcessContext(pd.getName(), pi.getCaseId(), step.getName(), step.getComponentName(), step.getUserData(), UnitType.STEP, pi.getProcessVariables(), execPath.getName());
+      ProcessContext pc = new ProcessContext(pd.getName(), pi.getCaseId(), step.getName(), c.getComponentName(), step.getUserData(), UnitType.STEP, pi.getProcessVariables(), c.getExecPathName());
       InvokableStep iStep = (InvokableStep)factory.getObject(pc);
       sr = iStep.executeStep();
     }
     catch (Exception e) {
       sr = new StepResponse(UnitResponseType.ERROR_PEND, null, "flowret_error");
     }
+    finally {
+      Watchdog.exit(activity);
+    }
+
+    if (sr.getUnitResponseType() == UnitResponseType.OK_PROCEED) {
+      c.setStatus(CompensationStatus.COMPLETED);
+    }
+    else {
+      logger.info("Case id -> " + pi.getCaseId() + ", compensation failed for step -> " + c.getStepName() + ", component -> " + c.getComponentName() + ", response -> " + sr.getUnitResponseType());
+      c.setStatus(CompensationStatus.FAILED);
+    }
+  }
+
+  private StepResponse executeStream(Stream stream) {
+    StepResponse sr = null;
+    StreamChannel channel = new StreamChannel(stream.getCapacity());
+    List<FutureTask<Void>> consumers = new ArrayList<>();
+    ExecutorService es = Flowret.instance().getExecutorService();
+    Watchdog.Activity activity = Watchdog.enter(pi.getCaseId(), execPath.getName(), stream);
+
+    try {
+      // start the consumers first so that they are ready to take items as soon as they are produced. A consumer
+      // rejected by a busy pool would be run right here by the rejected item handler and would keep draining the
+      // channel before the producer has even started. Such a consumer is skipped here and run once the producer is done
+      channel.setOverflowConsumer(getConsumer(stream));
+      Thread producerThread = Thread.currentThread();
+      for (int i = 0; i < stream.getConsumers(); i++) {
+        InvokableConsumer consumer = getConsumer(stream);
+        FutureTask<Void> task = new FutureTask<>(() -> channel.drain(consumer), null);
+        consumers.add(task);
+        es.execute(() -> {
+          if (Thread.currentThread() != producerThread) {
+            task.run();
+          }
+        });
+      }
+
+      ProcessComponentFactory factory = rts.factory;
+      ProcessContext pc = new ProcessContext(pd.getName(), pi.getCaseId(), stream.getName(), stream.getComponentName(), stream.getUserData(), UnitType.STREAM, pi.getProcessVariables(), execPath.getName());
+      pc.setExecPath(execPath);
+      InvokableProducer producer = (InvokableProducer)factory.getObject(pc);
+      sr = producer.produce(channel);
+    }
+    catch (Exception e) {
+      sr = new StepResponse(UnitResponseType.ERROR_PEND, null, "flowret_error");
+    }
+    finally {
+      // consumers which did not get a thread are run here once the channel is closed so that it is always drained.
+      // Items which did not fit in the channel have already been processed by the producer using the overflow consumer
+      channel.close();
+      for (FutureTask<Void> task : consumers) {
+        Utils.runOrAwait(task, pi.getCaseId());
+      }
+      Watchdog.exit(activity);
+    }
+
+    if ((sr.getUnitResponseType() == UnitResponseType.OK_PROCEED) && channel.isFailed()) {
+      StepResponse failure = channel.getFailure();
+      logger.info("Case id -> " + pi.getCaseId() + ", consumer failed for stream -> " + stream.getName() + ", component -> " + stream.getConsumerName() + ", execution path -> " + execPath.getName());
+      sr = new StepResponse(UnitResponseType.ERROR_PEND, null, failure.getWorkBasket(), failure.getErrorTuple());
+    }
 
     return sr;
   }
 
+  private StepResponse executeCall(Call call) {
+    List<ChildCase> children = null;
+    Watchdog.Activity activity = Watchdog.enter(pi.getCaseId(), execPath.getName(), call);
+    try {
+      ProcessComponentFactory factory = rts.factory;
+      ProcessContext pc = new ProcessContext(pd.getName(), pi.getCaseId(), call.getName(), call.getComponentName(), call.getUserData(), UnitType.CALL, pi.getProcessVariables(), execPath.getName());
+      pc.setExecPath(execPath);
+      InvokableCall iCall = (InvokableCall)factory.getObject(pc);
+      children = iCall.executeCall();
+    }
+    catch (Exception e) {
+      return new StepResponse(UnitResponseType.ERROR_PEND, null, "flowret_error");
+    }
+    finally {
+      Watchdog.exit(activity);
+    }
+
+    if (children == null) {
+      children = new ArrayList<>();
+    }
+
+    // the call unit is run again on resume and so we only start the child cases which have not yet been started
+    FlowretDao dao = rts.dao;
+    List<ChildCase> list = new ArrayList<>();
+    for (ChildCase child : children) {
+      if (dao.read(CONSTS_FLOWRET.DAO.JOURNEY + CONSTS_FLOWRET.DAO.SEP + child.getCaseId()) == null) {
+        list.add(child);
+      }
+    }
+
+    // child cases are started in waves of max concurrency
+    ExecutorService es = Flowret.instance().getExecutorService();
+    int max = call.getMaxConcurrency();
+    for (int i = 0; i < list.size(); i += max) {
+      List<FutureTask<Void>> tasks = new ArrayList<>();
+      for (int j = i; j < Math.min(i + max, list.size()); j++) {
+        ChildCase child = list.get(j);
+        FutureTask<Void> task = new FutureTask<>(() -> startChildCase(child), null);
+        tasks.add(task);
+        es.execute(task);
+      }
+      for (FutureTask<Void> task : tasks) {
+        Utils.runOrAwait(task, pi.getCaseId());
+      }
+    }
+
+    // we can only proceed if all child cases have completed else we pend and wait to be resumed by the last child
+    // case to complete
+    List<ProcessVariable> pvs = new ArrayList<>();
+    for (ChildCase child : children) {
+      Document d = dao.read(CONSTS_FLOWRET.DAO.PROCESS_INFO + CONSTS_FLOWRET.DAO.SEP + child.getCaseId());
+      if ((d == null) || (Boolean.TRUE.equals(d.getBoolean("$.process_info.is_complete")) == false)) {
+        logger.info("Case id -> " + pi.getCaseId() + ", child case not yet complete -> " + child.getCaseId() + ", call -> " + call.getName() + ", execution path -> " + execPath.getName());
+        List<String> caseIds = new ArrayList<>();
+        for (ChildCase c : children) {
+          caseIds.add(c.getCaseId());
+        }
+        rts.addChildCases(execPath.getName(), caseIds);
+        return new StepResponse(UnitResponseType.OK_PEND_EOR, null, "flowret_call");
+      }
+      pvs.addAll(getChangedProcessVariables(child, Utils.getProcessVariablesFromProcessInfo(d)));
+    }
+
+    // process variables of child cases are merged in the order of the child cases
+    for (ProcessVariable pv : pvs) {
+      pi.setProcessVariable(pv);
+    }
+
+    return new StepResponse(UnitResponseType.OK_PROCEED, null, null);
+  }
+
+  // the child case holds copies of the process variables it was started with. Only the ones it has added or changed
+  // are returned so that a copy does not overwrite a value the parent case has changed in the meantime
+  private List<ProcessVariable> getChangedProcessVariables(ChildCase child, List<ProcessVariable> pvs) {
+    Map<String, String> start = new HashMap<>();
+    ProcessDefinition cpd = Flowret.instance().getDefinitionCache().getProcessDefinition(new JDocument(child.getJourneyJson()));
+    for (ProcessVariable pv : cpd.getProcessVariables()) {
+      start.put(pv.getName(), pv.getValueAsString());
+    }
+    if (child.getProcessVariables() != null) {
+      for (ProcessVariable pv : child.getProcessVariables().getListOfProcessVariables()) {
+        start.put(pv.getName(), pv.getValueAsString());
+      }
+    }
+
+    List<ProcessVariable> list = new ArrayList<>();
+    for (ProcessVariable pv : pvs) {
+      if (Objects.equals(pv.getValueAsString(), start.get(pv.getName())) == false) {
+        list.add(pv);
+      }
+    }
+    return list;
+  }
+
+  private void startChildCase(ChildCase child) {
+    try {
+      Rts crts = new Rts(rts.dao, rts.factory, rts.eventHandler, rts.slaQm);
+      crts.startCase(child.getCaseId(), child.getJourneyJson(), child.getProcessVariables(), child.getJourneySlaJson(), pi.getCaseId());
+    }
+    catch (Exception e) {
+      // the child case will be seen as not complete and the parent will stay pended
+      logger.error("Case id -> " + pi.getCaseId() + ", error starting child case -> " + child.getCaseId() + ", error message -> " + e.getMessage());
+    }
+  }
+
+  private InvokableConsumer getConsumer(Stream stream) {
+    ProcessContext pc = new ProcessContext(pd.getName(), pi.getCaseId(), stream.getName(), stream.getConsumerName(), stream.getUserData(), UnitType.STREAM, pi.getProcessVariables(), execPath.getName());
+    pc.setExecPath(execPath);
+    return (InvokableConsumer)rts.factory.getObject(pc);
+  }
+
+  private StepResponse executeDataflowStep(Step step) {
+    DataflowStep ds = (dataflowSteps == null) ? null : dataflowSteps.remove(step.getName());
+
+    if (ds == null) {
+      // we are not part of a group already started and so we check if we are the start of one
+      discardDataflowSteps();
+      List<Step> group = pd.getDataflowGroup(step.getName());
+      if (group != null) {
+        // the rest of the group is started right away on their own copy of process variables
+        // their writes are applied to the process variables only when their turn comes. These steps
+        // have been declared idempotent as they will be run again if a step ahead of them pends
+        dataflowSteps = new HashMap<>();
+        ExecutorService es = Flowret.instance().getExecutorService();
+        for (int i = 1; i < group.size(); i++) {
+          Step s = group.get(i);
+          ProcessVariables pvs = pi.getProcessVariables().copy();
+          DataflowStep next = new DataflowStep(new FutureTask<>(() -> executeStep(s, pvs)), pvs);
+          dataflowSteps.put(s.getName(), next);
+          es.execute(next.task);
+        }
+        logger.info("Case id -> " + pi.getCaseId() + ", started dataflow group of size -> " + group.size() + " at step -> " + step.getName() + ", execution path -> " + execPath.getName());
+      }
+      return executeStep(step);
+    }
+
+    StepResponse resp = Utils.runOrAwait(ds.task, pi.getCaseId());
+    if (resp.getUnitResponseType() == UnitResponseType.OK_PROCEED) {
+      for (ProcessVariable pv : ds.pvs.getListOfProcessVariables()) {
+        if (step.getWrites().contains(pv.getName())) {
+          pi.setProcessVariable(pv);
+        }
+      }
+    }
+    return resp;
+  }
+
+  private void discardDataflowSteps() {
+    if (dataflowSteps == null) {
+      return;
+    }
+
+    // we wait for the ones which have already started so that no step of this execution path is running
+    // once we return. Their output is discarded
+    for (DataflowStep ds : dataflowSteps.values()) {
+      if (ds.task.cancel(false) == false) {
+        Utils.runOrAwait(ds.task, pi.getCaseId());
+      }
+    }
+    dataflowSteps = null;
+  }
+
+  private static class DataflowStep {
+
+    private final FutureTask<StepResponse> task;
+    private final ProcessVariables pvs;
+
+    private DataflowStep(FutureTask<StepResponse> task, ProcessVariables pvs) {
+      this.task = task;
+      this.pvs = pvs;
+    }
+
+  }
+
   private void writeProcessInfoAndAuditLog(ProcessInfo pi, Unit lastUnit) {
     try {
       pi.getLock().lock();
@@ -823,8 +1658,12 @@ public class ExecThreadTask implements Runnable {
 
   private void writeProcessInfo(ProcessInfo pi, Unit lastUnit) {
     pi.getSetter().setLastUnitExecuted(lastUnit);
+    if ((pi.isEphemeral == true) || (pi.isDispatched == true)) {
+      // written at the end of the run if required or by the process which dispatched the branch
+      return;
+    }
     Document d = pi.getDocument();
-    rts.dao.write(CONSTS_FLOWRET.DAO.PROCESS_INFO + CONSTS_FLOWRET.DAO.SEP + pi.getCaseId(), d);
+    rts.writeProcessInfo(d);
   }
 
   private void writeAuditLog(ProcessInfo pi, Unit lastUnit, List<String> branches) {
@@ -833,11 +1672,15 @@ public class ExecThreadTask implements Runnable {
       return;
     }
 
+    if (pi.isEphemeral == true) {
+      return;
+    }
+
     if (lastUnit == null) {
-      Utils.writeAuditLog(rts.dao, pi, null, branches, "end");
+      Utils.writeAuditLog(rts.getCaseDao(), pi, null, branches, "end");
     }
     else {
-      Utils.writeAuditLog(rts.dao, pi, lastUnit, branches, lastUnit.getName());
+      Utils.writeAuditLog(rts.getCaseDao(), pi, lastUnit, branches, lastUnit.getName());
     }
 
   }
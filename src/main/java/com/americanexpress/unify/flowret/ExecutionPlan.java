@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * @author Deepak Arora
+ */
+
+// The result of analyzing a process definition when it is read. It holds what can be known about running the
+// journey without running it along with warnings about patterns in the journey which are likely to perform badly
+public class ExecutionPlan {
+
+  // a value used for the fan out when it depends on the number of branches given by a dynamic route at run time
+  public static final int UNBOUNDED = -1;
+
+  private boolean[] reachable = null;
+  private int maxFanOut = 1;
+  private int maxNestingDepth = 0;
+  private boolean hasParallelRoutes = false;
+  private List<String> warnings = new ArrayList<>();
+
+  protected ExecutionPlan(int unitCount) {
+    reachable = new boolean[unitCount];
+  }
+
+  protected boolean isReachable(Unit unit) {
+    return reachable[unit.getId()];
+  }
+
+  protected void setReachable(Unit unit) {
+    reachable[unit.getId()] = true;
+  }
+
+  /**
+   * @return the maximum number of branches of the journey which can run at the same time or UNBOUNDED if a dynamic
+   * parallel route without a max_parallelism is involved
+   */
+  public int getMaxFanOut() {
+    return maxFanOut;
+  }
+
+  protected void setMaxFanOut(int maxFanOut) {
+    this.maxFanOut = maxFanOut;
+  }
+
+  /**
+   * @return the maximum depth of nesting of parallel routes. 0 if the journey has no parallel routes
+   */
+  public int getMaxNestingDepth() {
+    return maxNestingDepth;
+  }
+
+  protected void setMaxNestingDepth(int maxNestingDepth) {
+    this.maxNestingDepth = maxNestingDepth;
+  }
+
+  /**
+   * @return true if the journey has parallel routes
+   */
+  public boolean hasParallelRoutes() {
+    return hasParallelRoutes;
+  }
+
+  protected void setParallelRoutes(boolean hasParallelRoutes) {
+    this.hasParallelRoutes = hasParallelRoutes;
+  }
+
+  /**
+   * @return the performance warnings found in the journey
+   */
+  public List<String> getWarnings() {
+    return Collections.unmodifiableList(warnings);
+  }
+
+  protected void addWarning(String warning) {
+    warnings.add(warning);
+  }
+
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+import com.americanexpress.unify.jdocs.UnifyException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/*
+ * @author Deepak Arora
+ */
+
+// An expression over the process variables which is used by a route in place of a component to decide the branches
+// to take. The expression is parsed once when the journey is read into a tree of nodes which is then evaluated
+// against the process variables of the case each time the route is reached. The language supports
+// a) literals -> numbers, strings in single or double quotes, true, false and null
+// b) names of process variables. A process variable which is not present evaluates to null
+// c) comparisons -> ==, !=, <, <=, >, >= and boolean operators -> &&, ||, !
+// d) the conditional operator -> condition ? value1 : value2 and parentheses
+// e) lists of values -> [value1, value2, ...] used by dynamic parallel routes to specify more than one branch
+// Null and empty values in a list are left out and so [has_car ? 'car' : null, 'flight'] gives the branches
+// car and flight if has_car is true else only flight
+public class Expression {
+
+  private final String text;
+  private final Node root;
+
+  private interface Node {
+    Object eval(ProcessVariables pvs);
+  }
+
+  private Expression(String text) {
+    this.text = text;
+    Parser parser = new Parser(text);
+    root = parser.parseExpression();
+    parser.skipSpaces();
+    if (parser.pos < text.length()) {
+      throw parser.error("unexpected character '" + text.charAt(parser.pos) + "'");
+    }
+  }
+
+  protected static Expression compile(String text) {
+    return new Expression(text);
+  }
+
+  protected String getText() {
+    return text;
+  }
+
+  protected Object evaluate(ProcessVariables pvs) {
+    return root.eval(pvs);
+  }
+
+  // evaluates the expression and returns the names of the branches it gives
+  protected List<String> getBranches(ProcessVariables pvs) {
+    Object value = root.eval(pvs);
+    List<String> branches = new ArrayList<>();
+    if (value instanceof List) {
+      for (Object o : (List<?>)value) {
+        addBranch(branches, o);
+      }
+    }
+    else {
+      addBranch(branches, value);
+    }
+    return branches;
+  }
+
+  private static void addBranch(List<String> branches, Object value) {
+    if (value == null) {
+      return;
+    }
+    String s = value.toString();
+    if (s.isEmpty() == false) {
+      branches.add(s);
+    }
+  }
+
+  private UnifyException evalError(String reason) {
+    return new UnifyException("flowret_err_20", text, reason);
+  }
+
+  private boolean isTrue(Object value) {
+    if (value == null) {
+      return false;
+    }
+    if (value instanceof Boolean) {
+      return (Boolean)value;
+    }
+    throw evalError("a boolean was expected but found -> " + value);
+  }
+
+  private static boolean isEqual(Object o1, Object o2) {
+    if ((o1 instanceof Number) && (o2 instanceof Number)) {
+      return ((Number)o1).longValue() == ((Number)o2).longValue();
+    }
+    return Objects.equals(o1, o2);
+  }
+
+  // returns the result of comparing the two values or null if either of them is null
+  private Integer compare(Object o1, Object o2) {
+    if ((o1 == null) || (o2 == null)) {
+      return null;
+    }
+    if ((o1 instanceof Number) && (o2 instanceof Number)) {
+      return Long.compare(((Number)o1).longValue(), ((Number)o2).longValue());
+    }
+    if ((o1 instanceof String) && (o2 instanceof String)) {
+      return ((String)o1).compareTo((String)o2);
+    }
+    throw evalError("cannot compare -> " + o1 + " with -> " + o2);
+  }
+
+  private class Parser {
+
+    private final String s;
+    private int pos = 0;
+
+    private Parser(String s) {
+      this.s = s;
+    }
+
+    private UnifyException error(String reason) {
+      return new UnifyException("flowret_err_19", s, reason + " at position " + pos);
+    }
+
+    private void skipSpaces() {
+      while ((pos < s.length()) && Character.isWhitespace(s.charAt(pos))) {
+        pos++;
+      }
+    }
+
+    private boolean accept(String token) {
+      skipSpaces();
+      if (s.startsWith(token, pos)) {
+        pos += token.length();
+        return true;
+      }
+      return false;
+    }
+
+    private void expect(String token) {
+      if (accept(token) == false) {
+        throw error("expected '" + token + "'");
+      }
+    }
+
+    private Node parseExpression() {
+      Node cond = parseOr();
+      if (accept("?")) {
+        Node n1 = parseExpression();
+        expect(":");
+        Node n2 = parseExpression();
+        return pvs -> isTrue(cond.eval(pvs)) ? n1.eval(pvs) : n2.eval(pvs);
+      }
+      return cond;
+    }
+
+    private Node parseOr() {
+      Node node = parseAnd();
+      while (accept("||")) {
+        Node n1 = node;
+        Node n2 = parseAnd();
+        node = pvs -> isTrue(n1.eval(pvs)) || isTrue(n2.eval(pvs));
+      }
+      return node;
+    }
+
+    private Node parseAnd() {
+      Node node = parseEquality();
+      while (accept("&&")) {
+        Node n1 = node;
+        Node n2 = parseEquality();
+        node = pvs -> isTrue(n1.eval(pvs)) && isTrue(n2.eval(pvs));
+      }
+      return node;
+    }
+
+    private Node parseEquality() {
+      Node node = parseRelational();
+      while (true) {
+        Node n1 = node;
+        if (accept("==")) {
+          Node n2 = parseRelational();
+          node = pvs -> isEqual(n1.eval(pvs), n2.eval(pvs));
+        }
+        else if (accept("!=")) {
+          Node n2 = parseRelational();
+          node = pvs -> isEqual(n1.eval(pvs), n2.eval(pvs)) == false;
+        }
+        else {
+          return node;
+        }
+      }
+    }
+
+    private Node parseRelational() {
+      Node n1 = parseUnary();
+      if (accept("<=")) {
+        Node n2 = parseUnary();
+        return pvs -> {
+          Integer i = compare(n1.eval(pvs), n2.eval(pvs));
+          return (i != null) && (i <= 0);
+        };
+      }
+      if (accept(">=")) {
+        Node n2 = parseUnary();
+        return pvs -> {
+          Integer i = compare(n1.eval(pvs), n2.eval(pvs));
+          return (i != null) && (i >= 0);
+        };
+      }
+      if (accept("<")) {
+        Node n2 = parseUnary();
+        return pvs -> {
+          Integer i = compare(n1.eval(pvs), n2.eval(pvs));
+          return (i != null) && (i < 0);
+        };
+      }
+      if (accept(">")) {
+        Node n2 = parseUnary();
+        return pvs -> {
+          Integer i = compare(n1.eval(pvs), n2.eval(pvs));
+          return (i != null) && (i > 0);
+        };
+      }
+      return n1;
+    }
+
+    private Node parseUnary() {
+      skipSpaces();
+      if (s.startsWith("!", pos) && (s.startsWith("!=", pos) == false)) {
+        pos++;
+        Node n = parseUnary();
+        return pvs -> isTrue(n.eval(pvs)) == false;
+      }
+      return parsePrimary();
+    }
+
+    private Node parsePrimary() {
+      skipSpaces();
+      if (pos >= s.length()) {
+        throw error("unexpected end of expression");
+      }
+
+      char c = s.charAt(pos);
+
+      if (accept("(")) {
+        Node n = parseExpression();
+        expect(")");
+        return n;
+      }
+
+      if (accept("[")) {
+        List<Node> nodes = new ArrayList<>();
+        if (accept("]") == false) {
+          do {
+            nodes.add(parseExpression());
+          } while (accept(","));
+          expect("]");
+        }
+        return pvs -> {
+          List<Object> list = new ArrayList<>(nodes.size());
+          for (Node n : nodes) {
+            list.add(n.eval(pvs));
+          }
+          return list;
+        };
+      }
+
+      if ((c == '\'') || (c == '"')) {
+        String value = parseString(c);
+        return pvs -> value;
+      }
+
+      if (Character.isDigit(c) || ((c == '-') && (pos + 1 < s.length()) && Character.isDigit(s.charAt(pos + 1)))) {
+        int start = pos++;
+        while ((pos < s.length()) && Character.isDigit(s.charAt(pos))) {
+          pos++;
+        }
+        Long value = Long.parseLong(s.substring(start, pos));
+        return pvs -> value;
+      }
+
+      if (Character.isLetter(c) || (c == '_')) {
+        int start = pos;
+        while ((pos < s.length()) && (Character.isLetterOrDigit(s.charAt(pos)) || (s.charAt(pos) == '_'))) {
+          pos++;
+        }
+        String name = s.substring(start, pos);
+        switch (name) {
+          case "true":
+            return pvs -> Boolean.TRUE;
+          case "false":
+            return pvs -> Boolean.FALSE;
+          case "null":
+            return pvs -> null;
+          default:
+            return pvs -> (pvs == null) ? null : pvs.getValue(name);
+        }
+      }
+
+      throw error("unexpected character '" + c + "'");
+    }
+
+    private String parseString(char quote) {
+      StringBuilder sb = new StringBuilder();
+      pos++;
+      while (pos < s.length()) {
+        char c = s.charAt(pos++);
+        if (c == quote) {
+          return sb.toString();
+        }
+        if ((c == '\\') && (pos < s.length())) {
+          c = s.charAt(pos++);
+        }
+        sb.append(c);
+      }
+      throw error("unterminated string");
+    }
+
+  }
+
+}
@@ -15,12 +15,15 @@
 package com.americanexpress.unify.flowret;
 
 import com.americanexpress.unify.flowret.CONSTS_FLOWRET.DAO;
+import com.americanexpress.unify.jdocs.JDocument;
 import com.americanexpress.unify.jdocs.UnifyException;
 
+import java.util.Collection;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /*
  * @author Deepak Arora
@@ -28,9 +31,22 @@ import java.util.concurrent.TimeUnit;
 public class Flowret {
 
   private static Flowret singleton = new Flowret();
+  private static final ThreadLocal<Boolean> isPoolThread = ThreadLocal.withInitial(() -> false);
   private int maxThreads = 10;
   private int idleTimeout = 30000;
   private ExecutorService es = null;
+  private TimerService timerService = null;
+  private ResumeInbox resumeInbox = null;
+  private volatile BranchDispatcher branchDispatcher = null;
+  private BranchWorker branchWorker = null;
+  private volatile long leaseTimeout = 300000;
+  private volatile long branchTimeout = 240000;
+  private volatile CaseShards caseShards = null;
+  private volatile Watchdog watchdog = null;
+  private volatile DefinitionCache definitionCache = new DefinitionCache(256);
+  private volatile boolean isDefinitionsByReference = false;
+  private volatile DefinitionRegistry definitionRegistry = null;
+  private volatile WarmUpReport warmUpReport = null;
 
   /**
    * @return an instance of Flowret
@@ -64,6 +80,309 @@ public class Flowret {
     return new Wms(dao, wm, slaQm);
   }
 
+  /**
+   * Start the timer service of Flowret which resumes cases pended at a pause with a wait or a wake up time.
+   * Only one timer service can be running at a time. Timers persisted earlier are recovered on start
+   *
+   * @param dao                  An object called on by Flowret for persisting the state of the process to the data store
+   * @param factory              An object called upon by Flowret to get an instance of an object on which to invoke step and route execute methods
+   * @param listener             An object on which the application call back events are passed
+   * @param slaQm                An object on which the SLA enqueue and dequeue events are passed
+   * @param maxConcurrentResumes the maximum number of cases being resumed by the timer service at any time
+   * @return
+   */
+  public TimerService startTimerService(FlowretDao dao, ProcessComponentFactory factory, EventHandler listener, ISlaQueueManager slaQm, int maxConcurrentResumes) {
+    return startTimerService(dao, factory, listener, slaQm, maxConcurrentResumes, 0);
+  }
+
+  /**
+   * Start the timer service of Flowret with a limit on the rate at which scheduled cases are started
+   *
+   * @param dao                  An object called on by Flowret for persisting the state of the process to the data store
+   * @param factory              An object called upon by Flowret to get an instance of an object on which to invoke step and route execute methods
+   * @param listener             An object on which the application call back events are passed
+   * @param slaQm                An object on which the SLA enqueue and dequeue events are passed
+   * @param maxConcurrentResumes the maximum number of cases being resumed or started by the timer service at any time
+   * @param maxStartsPerSecond   the maximum number of scheduled cases started per second. 0 means no limit
+   * @return
+   */
+  public synchronized TimerService startTimerService(FlowretDao dao, ProcessComponentFactory factory, EventHandler listener, ISlaQueueManager slaQm, int maxConcurrentResumes, int maxStartsPerSecond) {
+    stopTimerService();
+    timerService = new TimerService(dao, factory, listener, slaQm, maxConcurrentResumes, maxStartsPerSecond);
+    timerService.start();
+    return timerService;
+  }
+
+  /**
+   * Stop the timer service. Timers not yet fired remain persisted and are recovered when the service is started again
+   */
+  public synchronized void stopTimerService() {
+    if (timerService != null) {
+      timerService.stop();
+      timerService = null;
+    }
+  }
+
+  protected TimerService getTimerService() {
+    return timerService;
+  }
+
+  /**
+   * Start the resume inbox of Flowret. Resume requests enqueued using the run time service are processed by a pool of
+   * workers. Requests persisted earlier and not yet processed are recovered on start. Only one resume inbox can be running at a time
+   *
+   * @param dao        An object called on by Flowret for persisting the state of the process to the data store
+   * @param factory    An object called upon by Flowret to get an instance of an object on which to invoke step and route execute methods
+   * @param listener   An object on which the application call back events are passed
+   * @param slaQm      An object on which the SLA enqueue and dequeue events are passed
+   * @param numWorkers the number of workers resuming cases
+   * @return
+   */
+  public synchronized ResumeInbox startResumeInbox(FlowretDao dao, ProcessComponentFactory factory, EventHandler listener, ISlaQueueManager slaQm, int numWorkers) {
+    stopResumeInbox();
+    resumeInbox = new ResumeInbox(dao, factory, listener, slaQm, numWorkers);
+    resumeInbox.start();
+    return resumeInbox;
+  }
+
+  /**
+   * Stop the resume inbox. Requests not yet processed remain persisted and are recovered when the inbox is started again
+   */
+  public synchronized void stopResumeInbox() {
+    if (resumeInbox != null) {
+      resumeInbox.stop();
+      resumeInbox = null;
+    }
+  }
+
+  protected ResumeInbox getResumeInbox() {
+    return resumeInbox;
+  }
+
+  /**
+   * Set the dispatcher used to run the branches of parallel routes on branch workers instead of on the threads
+   * of this process. Branch workers need to be started, in this or other processes, against the same data store.
+   * Branches of ephemeral cases are always run on the threads of this process
+   *
+   * @param dispatcher the branch dispatcher. Null means that branches are run on the threads of this process
+   */
+  public void setBranchDispatcher(BranchDispatcher dispatcher) {
+    this.branchDispatcher = dispatcher;
+  }
+
+  protected BranchDispatcher getBranchDispatcher() {
+    return branchDispatcher;
+  }
+
+  /**
+   * Set the maximum time to wait for the branches of a parallel route run by branch workers. A branch whose result
+   * has not been received by then is pended at its first unit with the work basket flowret_error. This needs to be
+   * shorter than the lease timeout as the lease on the case is held while waiting
+   *
+   * @param branchTimeout the branch timeout in milliseconds. Defaults to 4 minutes
+   */
+  public void setBranchTimeout(long branchTimeout) {
+    this.branchTimeout = branchTimeout;
+  }
+
+  public long getBranchTimeout() {
+    return branchTimeout;
+  }
+
+  /**
+   * Start the branch worker of Flowret which runs the branches taken from the dispatcher. Only one branch worker
+   * can be running at a time
+   *
+   * @param dispatcher An object from which the branch work items are taken and to which the results are passed
+   * @param dao        An object called on by Flowret for persisting the state of the process to the data store
+   * @param factory    An object called upon by Flowret to get an instance of an object on which to invoke step and route execute methods
+   * @param listener   An object on which the application call back events are passed
+   * @param slaQm      An object on which the SLA enqueue and dequeue events are passed
+   * @param numWorkers the number of branches run in parallel
+   * @return
+   */
+  public synchronized BranchWorker startBranchWorker(BranchDispatcher dispatcher, FlowretDao dao, ProcessComponentFactory factory, EventHandler listener, ISlaQueueManager slaQm, int numWorkers) {
+    stopBranchWorker();
+    branchWorker = new BranchWorker(dispatcher, dao, factory, listener, slaQm, numWorkers);
+    branchWorker.start();
+    return branchWorker;
+  }
+
+  /**
+   * Stop the branch worker after the branches being run are over
+   */
+  public synchronized void stopBranchWorker() {
+    if (branchWorker != null) {
+      branchWorker.stop();
+      branchWorker = null;
+    }
+  }
+
+  /**
+   * Start the case shards of Flowret. Once started, each case is started and resumed on the single thread of the shard
+   * the case id hashes to. Calls for a case are therefore run one after the other in the order in which they were made
+   * and the events of a case are raised in that order. Branches of parallel routes continue to run on the threads used
+   * for parallel processing
+   *
+   * @param numShards the number of shards
+   */
+  public synchronized void startCaseShards(int numShards) {
+    stopCaseShards();
+    caseShards = new CaseShards(numShards);
+  }
+
+  /**
+   * Stop the case shards after the calls submitted to them are over. Cases are then run on the thread of the caller
+   */
+  public synchronized void stopCaseShards() {
+    if (caseShards != null) {
+      CaseShards shards = caseShards;
+      caseShards = null;
+      shards.stop();
+    }
+  }
+
+  protected CaseShards getCaseShards() {
+    return caseShards;
+  }
+
+  /**
+   * Start the watchdog of Flowret which reports units running for longer than a threshold along with their stack trace
+   * and the starvation of the threads used for parallel processing. Only one watchdog can be running at a time
+   *
+   * @param listener        An object on which the findings of the watchdog are passed. Findings are also logged
+   * @param slowUnitMs      the time in milliseconds after which a running unit is reported as slow
+   * @param checkIntervalMs the interval in milliseconds at which the watchdog checks for slow units and starvation
+   * @return
+   */
+  public synchronized Watchdog startWatchdog(WatchdogListener listener, long slowUnitMs, long checkIntervalMs) {
+    stopWatchdog();
+    watchdog = new Watchdog(listener, slowUnitMs, checkIntervalMs);
+    watchdog.start();
+    return watchdog;
+  }
+
+  /**
+   * Stop the watchdog
+   */
+  public synchronized void stopWatchdog() {
+    if (watchdog != null) {
+      Watchdog w = watchdog;
+      watchdog = null;
+      w.stop();
+    }
+  }
+
+  protected Watchdog getWatchdog() {
+    return watchdog;
+  }
+
+  /**
+   * Analyze a journey without running it. The same analysis is done when a journey is read and its warnings logged
+   *
+   * @param journeyJson the journey definition
+   * @return the execution plan of the journey holding what is known about running it and the performance warnings
+   */
+  public ExecutionPlan getExecutionPlan(String journeyJson) {
+    return definitionCache.getProcessDefinition(new JDocument(journeyJson)).getPlan();
+  }
+
+  /**
+   * Start the definition registry of Flowret from which cases can be started by journey name and version. Journeys
+   * can be registered by the application using the registry returned. If a directory is specified, the journeys in it
+   * are loaded and the directory is watched so that changed journeys are published as new versions without a restart.
+   * Only one definition registry can be running at a time
+   *
+   * @param dirPath the directory containing the journeys. Can be null
+   * @return the definition registry
+   */
+  public synchronized DefinitionRegistry startDefinitionRegistry(String dirPath) {
+    stopDefinitionRegistry();
+    DefinitionRegistry registry = new DefinitionRegistry(dirPath);
+    registry.start();
+    definitionRegistry = registry;
+    return registry;
+  }
+
+  /**
+   * Stop the definition registry
+   */
+  public synchronized void stopDefinitionRegistry() {
+    if (definitionRegistry != null) {
+      DefinitionRegistry r = definitionRegistry;
+      definitionRegistry = null;
+      r.stop();
+    }
+  }
+
+  protected DefinitionRegistry getDefinitionRegistry() {
+    return definitionRegistry;
+  }
+
+  /**
+   * Warm up Flowret before it takes traffic. The journeys are parsed and compiled in parallel into the definition
+   * cache and the threads used for parallel processing are started. Optionally synthetic cases of each journey are run
+   * against an in memory data store using components which do nothing so that the code paths taken by real cases have
+   * been loaded and compiled by the JVM. Events of the synthetic cases are not passed to the application
+   *
+   * @param journeys        the journey definitions
+   * @param casesPerJourney the number of synthetic cases to run for each journey. 0 means that no cases are run
+   * @return the warm up report which is also returned by getWarmUpReport from then on
+   */
+  public WarmUpReport warmUp(Collection<String> journeys, int casesPerJourney) {
+    WarmUpReport report = WarmUp.run(es, definitionCache, journeys, casesPerJourney);
+    warmUpReport = report;
+    return report;
+  }
+
+  /**
+   * @return the report of the last warm up or null if Flowret has not been warmed up. Can be used by a readiness
+   * probe to report ready only once warm up is done
+   */
+  public WarmUpReport getWarmUpReport() {
+    return warmUpReport;
+  }
+
+  /**
+   * Set the maximum number of parsed journeys and SLA configurations kept in the definition cache. Cases of the same
+   * journey share the parsed definition and so a journey is parsed once rather than on every start and resume of a
+   * case. Setting the size clears the cache and its statistics
+   *
+   * @param maxEntries the maximum number of entries. 0 means that journeys are always parsed. Defaults to 256
+   */
+  public void setDefinitionCacheSize(int maxEntries) {
+    definitionCache = new DefinitionCache(maxEntries);
+  }
+
+  /**
+   * @return the definition cache which provides the hit rate and the parse time saved
+   */
+  public DefinitionCache getDefinitionCache() {
+    return definitionCache;
+  }
+
+  /**
+   * Set whether journeys and SLA configurations of new cases are stored by reference. If so, each distinct journey and
+   * SLA configuration is written once to the data store keyed on the journey name, version and content hash and each
+   * case stores only a reference to them. Otherwise each case stores its own copy. Cases stored either way can always
+   * be read. All nodes running cases against the same data store need to be on a version of Flowret that can read
+   * references before this is turned on
+   *
+   * @param isDefinitionsByReference true to store definitions by reference. Defaults to false
+   */
+  public void setDefinitionsByReference(boolean isDefinitionsByReference) {
+    this.isDefinitionsByReference = isDefinitionsByReference;
+  }
+
+  public boolean isDefinitionsByReference() {
+    return isDefinitionsByReference;
+  }
+
+  // returns true if the current thread is one of the threads used for parallel processing
+  protected static boolean isPoolThread() {
+    return isPoolThread.get();
+  }
+
   private Flowret() {
   }
 
@@ -78,7 +397,13 @@ public class Flowret {
     Flowret am = instance();
     am.maxThreads = maxThreads;
     am.idleTimeout = idleTimeout;
-    am.es = new ThreadPoolExecutor(am.maxThreads, am.maxThreads, am.idleTimeout, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(am.maxThreads * 2), new RejectedItemHandler());
+    AtomicInteger threadNum = new AtomicInteger();
+    am.es = new ThreadPoolExecutor(am.maxThreads, am.maxThreads, am.idleTimeout, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(am.maxThreads * 2), r -> {
+      return new Thread(() -> {
+        isPoolThread.set(true);
+        r.run();
+      }, "flowret-exec-" + threadNum.incrementAndGet());
+    }, new RejectedItemHandler());
     DAO.SEP = typeIdSep;
     ERRORS_FLOWRET.load();
   }
@@ -87,6 +412,12 @@ public class Flowret {
    * Method that is used to close Flowret
    */
   public static void close() {
+    singleton.stopTimerService();
+    singleton.stopResumeInbox();
+    singleton.stopBranchWorker();
+    singleton.stopCaseShards();
+    singleton.stopWatchdog();
+    singleton.stopDefinitionRegistry();
     singleton.es.shutdown();
     try {
       singleton.es.awaitTermination(5, TimeUnit.MINUTES);
@@ -96,6 +427,7 @@ public class Flowret {
       throw new UnifyException("flowret_err_7", e);
     }
     singleton.es = null;
+    singleton.warmUpReport = null;
   }
 
   public int getMaxThreads() {
@@ -106,6 +438,20 @@ public class Flowret {
     return idleTimeout;
   }
 
+  /**
+   * Set the time after which the lease held on a case being run expires unless renewed. The lease is renewed as the case
+   * is written and so this needs to be longer than the longest running unit. Leases are used only if the DAO supports them
+   *
+   * @param leaseTimeout the lease timeout in milliseconds. Defaults to 5 minutes
+   */
+  public void setLeaseTimeout(long leaseTimeout) {
+    this.leaseTimeout = leaseTimeout;
+  }
+
+  public long getLeaseTimeout() {
+    return leaseTimeout;
+  }
+
   protected ExecutorService getExecutorService() {
     return es;
   }
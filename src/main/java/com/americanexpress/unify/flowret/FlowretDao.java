@@ -45,4 +45,44 @@ public interface FlowretDao {
    */
   public long incrCounter(String key);
 
+  /**
+   * The method used to acquire a lease. The lease is granted if it is not held by anyone or has expired or is
+   * already held by the same owner in which case its expiry is extended. Each time the lease is granted to a new
+   * owner, the data store issues a fencing token higher than any issued earlier for the lease.
+   * The default implementation does not support leases and always returns 0
+   *
+   * @param key   the key of the lease
+   * @param owner the owner asking for the lease
+   * @param ttlMs the time in milliseconds after which the lease expires unless released earlier
+   * @return the fencing token if the lease was granted, -1 if it is held by someone else or 0 if leases are not supported
+   */
+  public default long acquireLease(String key, String owner, long ttlMs) {
+    return 0;
+  }
+
+  /**
+   * The method used to release a lease. Nothing is done if the lease is no longer held by the owner with the token
+   *
+   * @param key   the key of the lease
+   * @param owner the owner of the lease
+   * @param token the fencing token of the lease
+   */
+  public default void releaseLease(String key, String owner, long token) {
+  }
+
+  /**
+   * Method invoked to write the document to the data store only if no fencing token higher than the one given
+   * has been issued for the lease. The check and the write need to be atomic
+   *
+   * @param key      the key used to identify the document
+   * @param d        the JDocs document
+   * @param leaseKey the key of the lease
+   * @param token    the fencing token of the lease
+   * @return true if the document was written and false otherwise
+   */
+  public default boolean write(String key, Document d, String leaseKey, long token) {
+    write(key, d);
+    return true;
+  }
+
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+import com.americanexpress.unify.jdocs.Document;
+import com.americanexpress.unify.jdocs.JDocument;
+import com.americanexpress.unify.jdocs.UnifyException;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/*
+ * @author Deepak Arora
+ */
+
+// A reference implementation of the branch dispatcher which runs the branches on branch workers in the same process.
+// Work items and results are passed around as JSON strings just as they would be over an external queue
+public class InMemoryBranchDispatcher implements BranchDispatcher {
+
+  private LinkedBlockingQueue<String> queue = new LinkedBlockingQueue<>();
+  private Map<String, CompletableFuture<String>> results = new ConcurrentHashMap<>();
+
+  @Override
+  public void publish(Document work) {
+    // the result is registered before the work item can be taken so that a result passed back right away is not lost
+    results.put(work.getString("$.branch_work.id"), new CompletableFuture<>());
+    queue.add(work.getJson());
+  }
+
+  @Override
+  public Document awaitCompletion(String workId, long timeoutMs) {
+    try {
+      CompletableFuture<String> result = results.get(workId);
+      if (result == null) {
+        return null;
+      }
+      String json = result.get(timeoutMs, TimeUnit.MILLISECONDS);
+      return new JDocument(json);
+    }
+    catch (TimeoutException e) {
+      return null;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new UnifyException("flowret_err_15", e, workId);
+    }
+    catch (ExecutionException e) {
+      // should never happen as results are never completed exceptionally
+      throw new UnifyException("flowret_err_15", e, workId);
+    }
+    finally {
+      results.remove(workId);
+    }
+  }
+
+  @Override
+  public Document take(long timeoutMs) {
+    try {
+      String json = queue.poll(timeoutMs, TimeUnit.MILLISECONDS);
+      return (json == null) ? null : new JDocument(json);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+  }
+
+  @Override
+  public void complete(String workId, Document result) {
+    // the result of a work item no longer waited upon, for example because it timed out, is dropped
+    String json = result.getJson();
+    results.computeIfPresent(workId, (k, v) -> {
+      v.complete(json);
+      return v;
+    });
+  }
+
+  /**
+   * @return the number of work items not yet taken by a branch worker
+   */
+  public int getBacklog() {
+    return queue.size();
+  }
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+import java.util.List;
+
+/*
+ * @author Deepak Arora
+ */
+public interface InvokableCall {
+
+  /**
+   * Method invoked to get the child cases to be run by a call unit. The method is invoked every time the call unit
+   * is executed including when the parent case is resumed and so it needs to return the same child case ids each time
+   *
+   * @return the list of child cases
+   */
+  public List<ChildCase> executeCall();
+
+}
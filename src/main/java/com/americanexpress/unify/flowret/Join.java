@@ -26,6 +26,7 @@ public class Join extends Unit {
     this.next = next;
   }
 
+  @Override
   protected String getNext() {
     return next;
   }
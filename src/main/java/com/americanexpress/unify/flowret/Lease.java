@@ -0,0 +1,122 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+import com.americanexpress.unify.flowret.CONSTS_FLOWRET.DAO;
+import com.americanexpress.unify.jdocs.Document;
+import com.americanexpress.unify.jdocs.UnifyException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.UUID;
+
+/*
+ * @author Deepak Arora
+ */
+
+// The lease held on a case while it is being run. A case can only be run by the holder of its lease and the
+// documents of the case are written with the fencing token of the lease so that a holder whose lease has
+// expired and been taken over by another holder cannot overwrite the state written by the new holder.
+// The lease is renewed as the documents are written and so is kept for as long as the case keeps moving
+public class Lease {
+
+  private static Logger logger = LogManager.getLogger(Lease.class);
+
+  private FlowretDao dao = null;
+  private String caseId = null;
+  private String key = null;
+  private String owner = null;
+
+  // 0 means that the data store does not support leases
+  private long token = 0;
+
+  // the time after which the next write renews the lease
+  private long renewAt = 0;
+
+  private FlowretDao fencedDao = null;
+
+  private Lease(FlowretDao dao, String caseId) {
+    this.dao = dao;
+    this.caseId = caseId;
+    this.key = DAO.LEASE + DAO.SEP + caseId;
+    this.owner = UUID.randomUUID().toString();
+    this.fencedDao = new FlowretDao() {
+      @Override
+      public void write(String key, Document d) {
+        Lease.this.write(key, d);
+      }
+
+      @Override
+      public Document read(String key) {
+        return dao.read(key);
+      }
+
+      @Override
+      public long incrCounter(String key) {
+        return dao.incrCounter(key);
+      }
+    };
+  }
+
+  // acquires the lease on the case or throws an exception if the lease is held by someone else
+  protected static Lease acquire(FlowretDao dao, String caseId) {
+    Lease lease = new Lease(dao, caseId);
+    long ttl = Flowret.instance().getLeaseTimeout();
+    lease.token = dao.acquireLease(lease.key, lease.owner, ttl);
+    lease.renewAt = System.currentTimeMillis() + ttl / 3;
+    if (lease.token < 0) {
+      throw new UnifyException("flowret_err_16", caseId);
+    }
+    if (lease.token > 0) {
+      logger.info("Case id -> " + caseId + ", acquired lease, fencing token -> " + lease.token);
+    }
+    return lease;
+  }
+
+  protected void release() {
+    if (token > 0) {
+      dao.releaseLease(key, owner, token);
+    }
+  }
+
+  // the data store to use for writing the documents of the case, i.e. the process info, audit logs, journey, timers
+  // and calls. Reads and counters are passed through as is
+  protected FlowretDao getDao() {
+    return (token == 0) ? dao : fencedDao;
+  }
+
+  private void write(String docKey, Document d) {
+    renew();
+    if (dao.write(docKey, d, key, token) == false) {
+      throw new UnifyException("flowret_err_17", caseId, token + "");
+    }
+  }
+
+  // the lease is extended once a third of the lease timeout has passed since it was acquired or last renewed
+  private synchronized void renew() {
+    long now = System.currentTimeMillis();
+    if (now < renewAt) {
+      return;
+    }
+
+    long ttl = Flowret.instance().getLeaseTimeout();
+    if (dao.acquireLease(key, owner, ttl) != token) {
+      throw new UnifyException("flowret_err_17", caseId, token + "");
+    }
+    renewAt = now + ttl / 3;
+    logger.info("Case id -> " + caseId + ", renewed lease, fencing token -> " + token);
+  }
+
+}
@@ -21,15 +21,36 @@ public class Pause extends Unit {
 
   private String next = null;
 
+  // the time to wait in milliseconds before the case is resumed by the timer service. -1 means wait indefinitely
+  private long wait = -1;
+
+  // the name of the process variable containing the time at which the case is to be resumed
+  private String wakeAtVar = null;
+
   protected Pause(String name, String next) {
+    this(name, next, -1, null);
+  }
+
+  protected Pause(String name, String next, long wait, String wakeAtVar) {
     super(name, UnitType.PAUSE);
     this.next = next;
+    this.wait = wait;
+    this.wakeAtVar = wakeAtVar;
   }
 
+  @Override
   protected String getNext() {
     return next;
   }
 
+  protected long getWait() {
+    return wait;
+  }
+
+  protected String getWakeAtVar() {
+    return wakeAtVar;
+  }
+
   @Override
   protected String getComponentName() {
     return "pause";
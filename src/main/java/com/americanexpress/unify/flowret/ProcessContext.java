@@ -16,6 +16,9 @@ package com.americanexpress.unify.flowret;
 
 import com.americanexpress.unify.jdocs.ErrorTuple;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /*
  * @author Deepak Arora
  */
@@ -32,6 +35,14 @@ public class ProcessContext {
   private String pendWorkBasket = null;
   private ErrorTuple pendErrorTuple = new ErrorTuple(); // only valid for pend event
   private boolean isPendAtSameStep = false;
+  private ExecPath execPath = null; // only set when a step or route is invoked
+  private String parentCaseId = null;
+
+  // the consumption of the budget in the current run. Only set for events
+  private long runMs = 0;
+  private int unitsRun = 0;
+  private int branchesStarted = 0;
+  private boolean isBudgetExceeded = false;
 
   public ProcessContext(String journeyName, String caseId, String stepName, String compName, String userData, UnitType compType, ProcessVariables processVariables, String execPathName) {
     this.journeyName = journeyName;
@@ -89,10 +100,74 @@ public class ProcessContext {
     return userData;
   }
 
+  /**
+   * @return the id of the parent case if this case was started by a call unit of the parent case else null
+   */
+  public String getParentCaseId() {
+    return parentCaseId;
+  }
+
+  /**
+   * @return the time in milliseconds for which the current run of the case has gone on
+   */
+  public long getRunMs() {
+    return runMs;
+  }
+
+  /**
+   * @return the number of steps and routes run in the current run of the case
+   */
+  public int getUnitsRun() {
+    return unitsRun;
+  }
+
+  /**
+   * @return the number of branches of parallel routes started in the current run of the case
+   */
+  public int getBranchesStarted() {
+    return branchesStarted;
+  }
+
+  /**
+   * @return true if the case pended in the current run as its budget was exceeded
+   */
+  public boolean isBudgetExceeded() {
+    return isBudgetExceeded;
+  }
+
   public ProcessVariables getProcessVariables() {
     return processVariables;
   }
 
+  protected void setExecPath(ExecPath execPath) {
+    this.execPath = execPath;
+  }
+
+  /**
+   * @return the items given to the branch of the for each parallel route on which this unit is being executed
+   */
+  public List<String> getItems() {
+    return (execPath == null) ? new ArrayList<>() : new ArrayList<>(execPath.getItems());
+  }
+
+  /**
+   * @return the results held by the execution path. After a join, these are the results added by all branches
+   */
+  public List<String> getResults() {
+    return (execPath == null) ? new ArrayList<>() : execPath.getResults();
+  }
+
+  /**
+   * Add a result to the execution path. The results of all branches are gathered on the parent execution path at the join
+   *
+   * @param result the result to add
+   */
+  public void addResult(String result) {
+    if (execPath != null) {
+      execPath.addResult(result);
+    }
+  }
+
   public static ProcessContext forEvent(EventType eventType, Rts rts, String epName) {
     ProcessContext pc = new ProcessContext();
     ProcessDefinition pd = rts.pd;
@@ -104,6 +179,11 @@ public class ProcessContext {
     pc.processVariables = pi.getProcessVariables();
     pc.compName = "";
     pc.isPendAtSameStep = pi.isPendAtSameStep;
+    pc.parentCaseId = pi.getParentCaseId();
+    pc.runMs = pi.getRunMs();
+    pc.unitsRun = pi.getUnitsRun();
+    pc.branchesStarted = pi.getBranchesStarted();
+    pc.isBudgetExceeded = pi.isBudgetExceeded;
 
     switch (eventType) {
       case ON_PERSIST:
@@ -142,6 +222,7 @@ public class ProcessContext {
     pc.execPathName = pi.getPendExecPath();
     pc.processVariables = pi.getProcessVariables();
     pc.isPendAtSameStep = pi.isPendAtSameStep;
+    pc.parentCaseId = pi.getParentCaseId();
     pc.stepName = pi.getExecPath(pi.getPendExecPath()).getStep();
     pc.compName = pd.getUnit(pc.stepName).getComponentName();
     pc.userData = pd.getUnit(pc.stepName).getUserData();
@@ -15,7 +15,9 @@
 package com.americanexpress.unify.flowret;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -24,13 +26,47 @@ import java.util.Map;
  */
 public class ProcessDefinition {
 
+  // the unit that the units which move to end or to a name not in the definition point to once compiled
+  protected static final Unit END = new Unit("end", null) {
+    @Override
+    protected String getComponentName() {
+      return null;
+    }
+
+    @Override
+    protected String getUserData() {
+      return null;
+    }
+  };
+
   private String name = null;
   private Map<String, Ticket> tickets = new HashMap<>();
   private List<ProcessVariable> processVariables = new ArrayList<>();
   private Map<String, Unit> units = null;
 
+  // whether consecutive independent steps are to be run in parallel
+  private boolean isDataflow = false;
+
+  // groups of consecutive steps which can be run in parallel keyed on the name of the first step of the group
+  private Map<String, List<Step>> dataflowGroups = new HashMap<>();
+
+  // whether cases of this journey are run in memory and persisted only when they pend
+  private boolean isEphemeral = false;
+
+  // the limits on a run of the cases of this journey. Null means no limits
+  private Budget budget = null;
+
+  // the units indexed on their id. Set when the definition is compiled
+  private Unit[] graph = new Unit[0];
+
+  // the result of analyzing the definition. Set when the definition is read
+  private ExecutionPlan plan = null;
+
+  // the canonical instances of the names used by the cases of this definition. Set when the definition is compiled
+  private SymbolTable symbols = null;
+
   protected ProcessDefinition() {
-    this.units = new HashMap<>();
+    this.units = new LinkedHashMap<>();
   }
 
   protected String getName() {
@@ -49,6 +85,110 @@ public class ProcessDefinition {
     return units.get(name);
   }
 
+  protected Collection<Unit> getUnits() {
+    return units.values();
+  }
+
+  protected Unit getUnit(int id) {
+    return graph[id];
+  }
+
+  protected int getUnitCount() {
+    return graph.length;
+  }
+
+  // turns the units into a graph so that the run time moves from one unit to the next without looking up names.
+  // Units are given ids in the order of the flow, the names of the next units of units, branches and tickets
+  // are resolved to the units themselves and the join of each parallel route is found once here instead of
+  // every time a case reaches the route
+  protected void compile() {
+    graph = units.values().toArray(new Unit[0]);
+    for (int i = 0; i < graph.length; i++) {
+      graph[i].setId(i);
+    }
+
+    for (Unit unit : graph) {
+      if (unit.getNext() != null) {
+        unit.setNextUnit(resolve(unit.getNext()));
+      }
+      if (unit instanceof Route) {
+        for (Branch branch : ((Route)unit).getBranches()) {
+          branch.setNextUnit(resolve(branch.getNext()));
+        }
+      }
+    }
+
+    for (Ticket ticket : tickets.values()) {
+      ticket.setStepUnit(resolve(ticket.getStep()));
+    }
+
+    for (Unit unit : graph) {
+      switch (unit.getType()) {
+        case P_ROUTE:
+        case P_ROUTE_DYNAMIC:
+        case P_ROUTE_FOREACH:
+          Route route = (Route)unit;
+          route.setJoin(Utils.getJoin(this, route));
+          break;
+      }
+    }
+
+    symbols = new SymbolTable(this);
+  }
+
+  private Unit resolve(String name) {
+    Unit unit = (name == null) ? null : units.get(name);
+    return (unit == null) ? END : unit;
+  }
+
+  protected boolean isDataflow() {
+    return isDataflow;
+  }
+
+  protected void setDataflow(boolean isDataflow) {
+    this.isDataflow = isDataflow;
+  }
+
+  protected boolean isEphemeral() {
+    return isEphemeral;
+  }
+
+  protected void setEphemeral(boolean isEphemeral) {
+    this.isEphemeral = isEphemeral;
+  }
+
+  protected Budget getBudget() {
+    return budget;
+  }
+
+  protected void setBudget(Budget budget) {
+    this.budget = budget;
+  }
+
+  protected List<Step> getDataflowGroup(String stepName) {
+    return dataflowGroups.get(stepName);
+  }
+
+  protected void setDataflowGroup(String stepName, List<Step> group) {
+    dataflowGroups.put(stepName, group);
+  }
+
+  protected SymbolTable getSymbols() {
+    return symbols;
+  }
+
+  protected ExecutionPlan getPlan() {
+    return plan;
+  }
+
+  protected void setPlan(ExecutionPlan plan) {
+    this.plan = plan;
+  }
+
+  protected Collection<Ticket> getTickets() {
+    return tickets.values();
+  }
+
   protected Ticket getTicket(String name) {
     return tickets.get(name);
   }
@@ -20,11 +20,15 @@ import com.americanexpress.unify.jdocs.ErrorTuple;
 import com.americanexpress.unify.jdocs.JDocument;
 
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
@@ -37,6 +41,13 @@ public class ProcessInfo {
   private final String caseId;
   private final ProcessDefinition pd;
   private ReentrantLock lock = new ReentrantLock(true);
+  private CaseLock caseLock = new CaseLock();
+
+  // the thread of the shard on which the case is being run or null if the case is not being run on a shard
+  protected volatile Thread shardThread = null;
+
+  // the number of branch threads of the case running on the threads of the executor
+  protected final AtomicInteger branchThreads = new AtomicInteger(0);
 
   // shared variables that will be updated by threads
   private Map<String, ProcessVariable> pvMap = new ConcurrentHashMap<>();
@@ -59,8 +70,36 @@ public class ProcessInfo {
 
   protected volatile boolean isPendAtSameStep = false;
 
+  // an ephemeral case is only written to the data store at the end of a run if it has pended or has been written before
+  protected volatile boolean isEphemeral = false;
+
+  // whether the process info exists in the data store
+  protected volatile boolean isPersisted = false;
+
+  // a process info used by a branch worker to run a branch. It has only the execution paths of the branch and is never written
+  protected volatile boolean isDispatched = false;
+
+  // the id of the case which started this case as a child case using a call unit
+  private String parentCaseId = null;
+
+  // the completed steps which have a compensating component in the order of their completion
+  private List<Compensation> compensations = new ArrayList<>();
+
+  // the budget given when the case was started. If not given, the budget of the journey applies
+  private Budget budget = null;
+
+  // the consumption of the budget in the current run
+  private volatile long runStartedAt = 0;
+  private final AtomicInteger unitsRun = new AtomicInteger(0);
+  private final AtomicInteger branchesStarted = new AtomicInteger(0);
+  protected volatile boolean isBudgetExceeded = false;
+
   private Setter setter = null;
 
+  protected SymbolTable getSymbols() {
+    return pd.getSymbols();
+  }
+
   protected ProcessInfo(String caseId, ProcessDefinition pd) {
     this.caseId = caseId;
     this.pd = pd;
@@ -84,13 +123,65 @@ public class ProcessInfo {
   }
 
   protected Lock getLock() {
-    return lock;
+    return caseLock;
   }
 
   protected String getCaseId() {
     return caseId;
   }
 
+  protected String getParentCaseId() {
+    return parentCaseId;
+  }
+
+  protected void setParentCaseId(String parentCaseId) {
+    this.parentCaseId = parentCaseId;
+  }
+
+  protected Budget getBudget() {
+    return (budget != null) ? budget : pd.getBudget();
+  }
+
+  protected void setBudget(Budget budget) {
+    this.budget = budget;
+  }
+
+  // called at the start of each run of the case to reset the consumption of the budget
+  protected void startRun() {
+    runStartedAt = System.currentTimeMillis();
+    unitsRun.set(0);
+    branchesStarted.set(0);
+    isBudgetExceeded = false;
+  }
+
+  protected long getRunMs() {
+    return (runStartedAt == 0) ? 0 : System.currentTimeMillis() - runStartedAt;
+  }
+
+  protected int getUnitsRun() {
+    return unitsRun.get();
+  }
+
+  protected void addUnitRun() {
+    unitsRun.incrementAndGet();
+  }
+
+  protected int getBranchesStarted() {
+    return branchesStarted.get();
+  }
+
+  protected void addBranchesStarted(int count) {
+    branchesStarted.addAndGet(count);
+  }
+
+  protected synchronized void addCompensation(Compensation c) {
+    compensations.add(c);
+  }
+
+  protected synchronized List<Compensation> getCompensations() {
+    return new ArrayList<>(compensations);
+  }
+
   private void setPendExecPath(String pendExecPath) {
     // go ahead if we are trying to clear
     if (pendExecPath.isEmpty() == true) {
@@ -249,6 +340,11 @@ public class ProcessInfo {
       s = path.getPendWorkBasket();
       d.setString("$.process_info.exec_paths[%].pend_workbasket", s, i + "");
 
+      s = path.getTimerId();
+      if (s.isEmpty() == false) {
+        d.setString("$.process_info.exec_paths[%].timer_id", s, i + "");
+      }
+
       ErrorTuple et = path.getPendErrorTuple();
       d.setString("$.process_info.exec_paths[%].pend_error.code", et.getErrorCode(), i + "");
       d.setString("$.process_info.exec_paths[%].pend_error.message", et.getErrorMessage(), i + "");
@@ -264,6 +360,15 @@ public class ProcessInfo {
       if (path.getUnitResponseType() != null) {
         d.setString("$.process_info.exec_paths[%].unit_response_type", path.getUnitResponseType().toString().toLowerCase(), i + "");
       }
+
+      List<String> list = path.getItems();
+      for (int j = 0; j < list.size(); j++) {
+        d.setArrayValueString("$.process_info.exec_paths[%].items[%]", list.get(j), i + "", j + "");
+      }
+      list = path.getResults();
+      for (int j = 0; j < list.size(); j++) {
+        d.setArrayValueString("$.process_info.exec_paths[%].results[%]", list.get(j), i + "", j + "");
+      }
       i++;
     }
 
@@ -272,9 +377,86 @@ public class ProcessInfo {
       d.setString("$.process_info.ticket", ticket);
     }
 
+    // write compensations
+    i = 0;
+    for (Compensation c : getCompensations()) {
+      d.setString("$.process_info.compensations[%].step", c.getStepName(), i + "");
+      d.setString("$.process_info.compensations[%].exec_path", c.getExecPathName(), i + "");
+      d.setString("$.process_info.compensations[%].component", c.getComponentName(), i + "");
+      d.setString("$.process_info.compensations[%].status", c.getStatus().toString().toLowerCase(), i + "");
+      i++;
+    }
+
+    if (parentCaseId != null) {
+      d.setString("$.process_info.parent_case_id", parentCaseId);
+    }
+
+    if (isEphemeral == true) {
+      d.setBoolean("$.process_info.is_ephemeral", true);
+    }
+
+    if (budget != null) {
+      d.setLong("$.process_info.budget.max_run_ms", budget.getMaxRunMs());
+      d.setInteger("$.process_info.budget.max_units", budget.getMaxUnits());
+      d.setInteger("$.process_info.budget.max_branches", budget.getMaxBranches());
+      d.setString("$.process_info.budget.work_basket", budget.getWorkBasket());
+    }
+
     return d;
   }
 
+  // the lock is not taken by the shard thread of a case when the case has no branches running as then the process
+  // info is only ever touched by the shard thread. Branches are only started by the shard thread when it does not
+  // hold the lock. The shard thread records whether each lock was taken or skipped so that the matching unlock does
+  // the same even if branches have started or finished in between. All other threads always take the lock
+  private class CaseLock implements Lock {
+
+    // only ever touched by the shard thread
+    private final ArrayDeque<Boolean> isSkipped = new ArrayDeque<>();
+
+    @Override
+    public void lock() {
+      if (Thread.currentThread() != shardThread) {
+        lock.lock();
+        return;
+      }
+
+      boolean skip = (branchThreads.get() == 0);
+      if (skip == false) {
+        lock.lock();
+      }
+      isSkipped.push(skip);
+    }
+
+    @Override
+    public void unlock() {
+      if ((Thread.currentThread() != shardThread) || (isSkipped.pop() == false)) {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+      lock.lockInterruptibly();
+    }
+
+    @Override
+    public boolean tryLock() {
+      return lock.tryLock();
+    }
+
+    @Override
+    public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+      return lock.tryLock(time, unit);
+    }
+
+    @Override
+    public Condition newCondition() {
+      return lock.newCondition();
+    }
+
+  }
+
   public Setter getSetter() {
     return this.setter;
   }
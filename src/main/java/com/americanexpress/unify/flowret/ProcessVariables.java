@@ -111,6 +111,16 @@ public class ProcessVariables {
     }
   }
 
+  protected Object getValue(String name) {
+    ProcessVariable pv = pvMap.get(name);
+    if (pv == null) {
+      return null;
+    }
+    else {
+      return pv.getValue();
+    }
+  }
+
   public ProcessVariableType getType(String name) {
     ProcessVariable pv = pvMap.get(name);
     if (pv == null) {
@@ -132,9 +142,22 @@ public class ProcessVariables {
     pvMap.put(name, pv);
   }
 
+  public void remove(String name) {
+    pvMap.remove(name);
+  }
+
   protected List<ProcessVariable> getListOfProcessVariables() {
     return new ArrayList<>(pvMap.values());
   }
 
+  // returns a deep copy so that updates to the copy do not reflect in this object
+  protected ProcessVariables copy() {
+    Map<String, ProcessVariable> map = new ConcurrentHashMap<>();
+    for (ProcessVariable pv : pvMap.values()) {
+      map.put(pv.getName(), new ProcessVariable(pv.getName(), pv.getType(), pv.getValue()));
+    }
+    return new ProcessVariables(map);
+  }
+
 
 }
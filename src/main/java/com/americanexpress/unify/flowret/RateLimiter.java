@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+/*
+ * @author Deepak Arora
+ */
+
+// A token bucket which refills continuously at the given rate. The bucket only holds a tenth of a
+// second worth of permits so that a backlog is released smoothly rather than as a burst
+public class RateLimiter {
+
+  private double permitsPerMs = 0;
+  private double capacity = 0;
+  private double permits = 0;
+  private long last = 0;
+
+  protected RateLimiter(int permitsPerSecond) {
+    this.permitsPerMs = permitsPerSecond / 1000.0;
+    this.capacity = Math.max(1, permitsPerSecond / 10.0);
+    this.permits = capacity;
+    this.last = System.currentTimeMillis();
+  }
+
+  protected synchronized void acquire() throws InterruptedException {
+    while (true) {
+      long now = System.currentTimeMillis();
+      permits = Math.min(capacity, permits + (now - last) * permitsPerMs);
+      last = now;
+
+      if (permits >= 1) {
+        permits = permits - 1;
+        return;
+      }
+
+      long wait = (long)Math.ceil((1 - permits) / permitsPerMs);
+      Thread.sleep(Math.max(wait, 1));
+    }
+  }
+
+}
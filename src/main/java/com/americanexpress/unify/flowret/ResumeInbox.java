@@ -0,0 +1,379 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+import com.americanexpress.unify.flowret.CONSTS_FLOWRET.DAO;
+import com.americanexpress.unify.jdocs.Document;
+import com.americanexpress.unify.jdocs.JDocument;
+import com.americanexpress.unify.jdocs.UnifyException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * @author Deepak Arora
+ */
+
+// Resume requests are appended to the data store as they arrive, each with its own sequence number.
+// In memory, the pending requests of a case are merged into a single resume and a case is only ever
+// being resumed by one worker at a time. Requests arriving for a case while it is being resumed are
+// merged and run once the current resume is over, thereby keeping the order in which they arrived.
+// A resume which fails because the lease of the case is held elsewhere is retried with backoff for as long as
+// it takes, its requests staying pending in the meantime
+public class ResumeInbox {
+
+  private static Logger logger = LogManager.getLogger(ResumeInbox.class);
+
+  private static final String SEQ_COUNTER = "flowret_resume_inbox_seq";
+  private static final int MAX_ATTEMPTS = 3;
+  private static final long RETRY_DELAY_MS = 1000;
+  private static final long MAX_RETRY_DELAY_MS = 60000;
+
+  private FlowretDao dao = null;
+  private ProcessComponentFactory factory = null;
+  private EventHandler eventHandler = null;
+  private ISlaQueueManager slaQm = null;
+  private int numWorkers = 0;
+  private Thread[] workers = null;
+  private volatile boolean isRunning = false;
+
+  // pending resumes by case id, cases ready to be resumed, cases being resumed and cases waiting to retry a resume
+  private Map<String, Entry> pending = new HashMap<>();
+  private LinkedBlockingQueue<String> ready = new LinkedBlockingQueue<>();
+  private Set<String> running = new HashSet<>();
+  private Map<String, Entry> retries = new HashMap<>();
+
+  // all requests before the checkpoint have been processed and so recovery starts from it. It is moved over the
+  // requests processed by this inbox and, when the inbox is idle, over the requests found already processed in the
+  // data store, for example by another node. A request still pending therefore holds the checkpoint back
+  private long checkpoint = 0;
+  private TreeSet<Long> processed = new TreeSet<>();
+
+  protected ResumeInbox(FlowretDao dao, ProcessComponentFactory factory, EventHandler eventHandler, ISlaQueueManager slaQm, int numWorkers) {
+    this.dao = dao;
+    this.factory = factory;
+    this.eventHandler = eventHandler;
+    this.slaQm = slaQm;
+    this.numWorkers = numWorkers;
+  }
+
+  // the requests of a case are merged in the order of their sequence numbers and so the request is persisted without
+  // holding the lock of the inbox
+  protected void enqueue(FlowretDao dao, String caseId, ProcessVariables pvs) {
+    long seq = persist(dao, caseId, pvs);
+    add(seq, caseId, pvs.getListOfProcessVariables());
+  }
+
+  // append the request to the data store. Returns the sequence number of the request
+  protected static long persist(FlowretDao dao, String caseId, ProcessVariables pvs) {
+    long seq = dao.incrCounter(SEQ_COUNTER);
+    Document d = new JDocument();
+    d.setString("$.resume.case_id", caseId);
+    d.setString("$.resume.status", "pending");
+    Utils.setProcessVariables(d, "$.resume.process_variables", pvs.getListOfProcessVariables());
+    dao.write(DAO.RESUME_INBOX + DAO.SEP + seq, d);
+    return seq;
+  }
+
+  /**
+   * Method that starts the workers of the inbox. Requests persisted earlier and not yet processed are recovered
+   */
+  public synchronized void start() {
+    if (isRunning == true) {
+      return;
+    }
+
+    isRunning = true;
+    recover();
+
+    workers = new Thread[numWorkers];
+    for (int i = 0; i < numWorkers; i++) {
+      workers[i] = new Thread(() -> work(), "flowret-resume-" + i);
+      workers[i].setDaemon(true);
+      workers[i].start();
+    }
+  }
+
+  /**
+   * Method that stops the workers after they finish the resume they are running. Pending requests remain persisted
+   * and are recovered on the next start
+   */
+  public void stop() {
+    synchronized (this) {
+      if (isRunning == false) {
+        return;
+      }
+      isRunning = false;
+    }
+
+    // workers are not interrupted so as not to disturb a case being resumed
+    for (Thread worker : workers) {
+      try {
+        worker.join();
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * @return the number of cases with resumes pending or running
+   */
+  public synchronized int getBacklog() {
+    return pending.size() + running.size() + retries.size();
+  }
+
+  protected synchronized void add(long seq, String caseId, List<ProcessVariable> pvs) {
+    // a case waiting to retry is resumed with the new request at the time of the retry
+    Entry entry = retries.get(caseId);
+    if (entry != null) {
+      entry.add(seq, pvs);
+      return;
+    }
+
+    entry = pending.get(caseId);
+    if (entry == null) {
+      entry = new Entry();
+      pending.put(caseId, entry);
+      if (running.contains(caseId) == false) {
+        ready.add(caseId);
+      }
+    }
+    entry.add(seq, pvs);
+  }
+
+  private void recover() {
+    Document cd = dao.read(DAO.RESUME_INBOX + DAO.SEP + "checkpoint");
+    long from = (cd == null) ? 0 : cd.getLong("$.checkpoint.seq");
+
+    // taking a number from the counter tells us where the requests end. The number itself is never used and so it
+    // counts as processed. A number for which there is no request yet holds the checkpoint back as the request may
+    // still be in the course of being written
+    long to = dao.incrCounter(SEQ_COUNTER);
+    Document td = new JDocument();
+    td.setString("$.resume.status", "skipped");
+    dao.write(DAO.RESUME_INBOX + DAO.SEP + to, td);
+    int count = 0;
+    synchronized (this) {
+      checkpoint = from;
+      processed.clear();
+      processed.add(to);
+    }
+    for (long seq = from; seq < to; seq++) {
+      Document d = dao.read(DAO.RESUME_INBOX + DAO.SEP + seq);
+      if (d == null) {
+        continue;
+      }
+      if (d.getString("$.resume.status").equals("pending")) {
+        add(seq, d.getString("$.resume.case_id"), Utils.getProcessVariables(d, "$.resume.process_variables"));
+        count++;
+      }
+      else {
+        setProcessed(seq);
+      }
+    }
+    logger.info("Recovered resume requests -> " + count);
+  }
+
+  private void work() {
+    while (isRunning == true) {
+      String caseId = null;
+      Entry entry = null;
+      try {
+        promoteRetries();
+        caseId = ready.poll(100, TimeUnit.MILLISECONDS);
+        if (caseId == null) {
+          continue;
+        }
+        synchronized (this) {
+          entry = pending.remove(caseId);
+          running.add(caseId);
+        }
+        entry = resume(caseId, entry);
+      }
+      catch (InterruptedException e) {
+        break;
+      }
+      finally {
+        if (caseId != null) {
+          done(caseId, entry);
+        }
+      }
+    }
+  }
+
+  // returns the entry if the resume is to be retried else null
+  private Entry resume(String caseId, Entry entry) {
+    String status = "done";
+    entry.attempts++;
+    try {
+      logger.info("Case id -> " + caseId + ", resuming case from inbox, requests merged -> " + entry.requests.size() + ", attempt -> " + entry.attempts);
+      ProcessVariables pvs = new ProcessVariables();
+      for (ProcessVariable pv : entry.getProcessVariables()) {
+        pvs.setValue(pv.getName(), pv.getType(), pv.getValue());
+      }
+      Rts rts = new Rts(dao, factory, eventHandler, slaQm);
+      rts.resumeCase(caseId, pvs);
+    }
+    catch (UnifyException e) {
+      if (e.getErrorCode().equals("flowret_err_16")) {
+        // the case is being run elsewhere and so we wait for our turn however long it takes
+        return retry(caseId, entry, e);
+      }
+      if (e.getErrorCode().equals("flowret_err_6")) {
+        // nothing left to resume and so there is nothing to retry
+        logger.info("Case id -> " + caseId + ", case already completed, discarding resume requests -> " + entry.requests.size());
+      }
+      else if (entry.attempts < MAX_ATTEMPTS) {
+        return retry(caseId, entry, e);
+      }
+      else {
+        logger.error("Case id -> " + caseId + ", error resuming case from inbox, attempt -> " + entry.attempts + ", error message -> " + e.getMessage());
+        status = "failed";
+      }
+    }
+    catch (Exception e) {
+      if (entry.attempts < MAX_ATTEMPTS) {
+        return retry(caseId, entry, e);
+      }
+      logger.error("Case id -> " + caseId + ", error resuming case from inbox, attempt -> " + entry.attempts + ", error message -> " + e.getMessage());
+      status = "failed";
+    }
+
+    for (long seq : entry.requests.keySet()) {
+      String key = DAO.RESUME_INBOX + DAO.SEP + seq;
+      Document d = dao.read(key);
+      if (d != null) {
+        d.setString("$.resume.status", status);
+        dao.write(key, d);
+      }
+      setProcessed(seq);
+    }
+    return null;
+  }
+
+  private Entry retry(String caseId, Entry entry, Exception e) {
+    long delay = Math.min(RETRY_DELAY_MS << Math.min(entry.attempts - 1, 16), MAX_RETRY_DELAY_MS);
+    logger.error("Case id -> " + caseId + ", error resuming case from inbox, attempt -> " + entry.attempts + ", retrying in ms -> " + delay + ", error message -> " + e.getMessage());
+    entry.retryAt = System.currentTimeMillis() + delay;
+    return entry;
+  }
+
+  // moves the cases whose retry is due to the ready queue
+  private synchronized void promoteRetries() {
+    long now = System.currentTimeMillis();
+    Iterator<Map.Entry<String, Entry>> iter = retries.entrySet().iterator();
+    while (iter.hasNext()) {
+      Map.Entry<String, Entry> e = iter.next();
+      if (e.getValue().retryAt <= now) {
+        iter.remove();
+        pending.put(e.getKey(), e.getValue());
+        ready.add(e.getKey());
+      }
+    }
+  }
+
+  private synchronized void setProcessed(long seq) {
+    if (seq < checkpoint) {
+      return;
+    }
+    processed.add(seq);
+    while (processed.remove(checkpoint) == true) {
+      checkpoint++;
+    }
+  }
+
+  private synchronized void done(String caseId, Entry retry) {
+    running.remove(caseId);
+    if (retry != null) {
+      // requests which came in while we were running are merged into the ones to retry
+      Entry entry = pending.remove(caseId);
+      if (entry != null) {
+        retry.requests.putAll(entry.requests);
+      }
+      retries.put(caseId, retry);
+    }
+    else if (pending.containsKey(caseId)) {
+      // requests which came in while we were running
+      ready.add(caseId);
+    }
+    else if (pending.isEmpty() && running.isEmpty() && retries.isEmpty()) {
+      writeCheckpoint();
+    }
+  }
+
+  // nothing is outstanding and so recovery can start after the requests processed so far. We also move past the
+  // requests processed by other nodes. The checkpoint is never moved back as another node may have moved it further
+  private void writeCheckpoint() {
+    while (true) {
+      if (processed.remove(checkpoint) == true) {
+        checkpoint++;
+        continue;
+      }
+      Document d = dao.read(DAO.RESUME_INBOX + DAO.SEP + checkpoint);
+      if ((d == null) || d.getString("$.resume.status").equals("pending")) {
+        break;
+      }
+      checkpoint++;
+    }
+
+    String key = DAO.RESUME_INBOX + DAO.SEP + "checkpoint";
+    Document cd = dao.read(key);
+    if ((cd != null) && (cd.getLong("$.checkpoint.seq") >= checkpoint)) {
+      return;
+    }
+    Document d = new JDocument();
+    d.setLong("$.checkpoint.seq", checkpoint);
+    dao.write(key, d);
+  }
+
+  private static class Entry {
+
+    // requests by sequence number
+    private TreeMap<Long, List<ProcessVariable>> requests = new TreeMap<>();
+    private int attempts = 0;
+    private long retryAt = 0;
+
+    private void add(long seq, List<ProcessVariable> list) {
+      requests.put(seq, list);
+    }
+
+    // later requests override the variables of earlier ones
+    private List<ProcessVariable> getProcessVariables() {
+      Map<String, ProcessVariable> map = new LinkedHashMap<>();
+      for (List<ProcessVariable> list : requests.values()) {
+        for (ProcessVariable pv : list) {
+          map.put(pv.getName(), pv);
+        }
+      }
+      return new ArrayList<>(map.values());
+    }
+
+  }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+ * @author Deepak Arora
+ */
+public class RetryPolicy {
+
+  // total number of attempts including the first one
+  private int maxAttempts = 1;
+  private long backoffMs = 0;
+  private long maxBackoffMs = 0;
+  private int multiplier = 2;
+  private boolean jitter = true;
+
+  protected RetryPolicy(int maxAttempts, long backoffMs, long maxBackoffMs, int multiplier, boolean jitter) {
+    this.maxAttempts = maxAttempts;
+    this.backoffMs = backoffMs;
+    this.maxBackoffMs = maxBackoffMs;
+    this.multiplier = multiplier;
+    this.jitter = jitter;
+  }
+
+  protected int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  // delay before the next attempt given the number of attempts already made
+  protected long getDelay(int attempt) {
+    long delay = backoffMs;
+    for (int i = 1; (i < attempt) && (delay < maxBackoffMs); i++) {
+      delay = delay * multiplier;
+    }
+    delay = Math.min(delay, maxBackoffMs);
+
+    // with jitter we wait anywhere between half and the full delay so that retries of cases failing together spread out
+    if ((jitter == true) && (delay > 1)) {
+      delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    return delay;
+  }
+
+}
@@ -14,6 +14,7 @@
 
 package com.americanexpress.unify.flowret;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -27,6 +28,18 @@ public class Route extends Unit {
   private String userData = null;
   private String next = null;
 
+  // number of items given to each branch of a for each parallel route
+  private int chunkSize = 1;
+
+  // the join at which the branches of a parallel route meet. Set when the process definition is compiled
+  private Join join = null;
+
+  // the expression which decides the branches of the route in place of a component. Null if a component is used
+  private Expression expression = null;
+
+  // the maximum number of branches of a dynamic or for each parallel route run at the same time. 0 means no limit
+  private int maxParallelism = 0;
+
   protected Route(String name, String componentName, String userData, Map<String, Branch> branches, UnitType type) {
     super(name, type);
     this.branches = branches;
@@ -43,6 +56,10 @@ public class Route extends Unit {
     return branches.get(name);
   }
 
+  protected Collection<Branch> getBranches() {
+    return branches.values();
+  }
+
   @Override
   protected String getComponentName() {
     return componentName;
@@ -53,8 +70,41 @@ public class Route extends Unit {
     return userData;
   }
 
+  @Override
   protected String getNext() {
     return next;
   }
 
+  protected Expression getExpression() {
+    return expression;
+  }
+
+  protected void setExpression(Expression expression) {
+    this.expression = expression;
+  }
+
+  protected int getMaxParallelism() {
+    return maxParallelism;
+  }
+
+  protected void setMaxParallelism(int maxParallelism) {
+    this.maxParallelism = maxParallelism;
+  }
+
+  protected Join getJoin() {
+    return join;
+  }
+
+  protected void setJoin(Join join) {
+    this.join = join;
+  }
+
+  protected int getChunkSize() {
+    return chunkSize;
+  }
+
+  protected void setChunkSize(int chunkSize) {
+    this.chunkSize = chunkSize;
+  }
+
 }
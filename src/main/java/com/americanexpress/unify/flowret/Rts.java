@@ -20,7 +20,13 @@ import com.americanexpress.unify.jdocs.UnifyException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
 
 /*
  * @author Deepak Arora
@@ -35,9 +41,33 @@ public final class Rts {
   protected EventHandler eventHandler = null;
   protected ProcessDefinition pd = null;
   protected Document slad = null;
+  protected SlaMilestones slaMilestones = null;
   protected ProcessInfo pi = null;
   protected ISlaQueueManager slaQm = null;
 
+  // the journey of an ephemeral case which is yet to be written to the data store
+  private Document journey = null;
+
+  // timers set by timed pauses during the current run. Armed once the run is over and the pend has been written
+  private List<Timer> timers = new ArrayList<>();
+
+  // correlations registered by steps pending during the current run
+  private List<Correlation> correlations = new ArrayList<>();
+
+  // the lease held on the case during the current run. Released when the call to start or resume the case returns
+  private Lease lease = null;
+
+  // the child cases of the call units pended during the current run keyed on the execution path
+  private Map<String, List<String>> childCases = new HashMap<>();
+
+  // a synthetic case run to warm up Flowret is kept away from the timer service, the correlations and the branch
+  // dispatcher as these work against the data store of the application
+  protected boolean isWarmUp = false;
+
+  // attempts to resume a parent case whose lease is held while it finishes its own run
+  private static final int MAX_PARENT_ATTEMPTS = 3;
+  private static final long PARENT_RETRY_DELAY_MS = 1000;
+
   protected Rts(FlowretDao dao, ProcessComponentFactory factory, EventHandler eventHandler, ISlaQueueManager slaQm) {
     this.dao = dao;
     this.factory = factory;
@@ -66,7 +96,7 @@ public final class Rts {
     else {
       try {
         eventHandler.invoke(event, pc);
-        if ((slad != null) && (slaQm != null)) {
+        if ((slaMilestones != null) && (slaQm != null)) {
           raiseSlaEvent(event, pc);
         }
       }
@@ -78,28 +108,116 @@ public final class Rts {
   }
 
   public ProcessContext startCase(String caseId, String journeyJson, ProcessVariables pvs, String journeySlaJson) {
+    return onShard(caseId, () -> startCase(caseId, journeyJson, pvs, journeySlaJson, false, null, null));
+  }
+
+  /**
+   * Start a case optionally in ephemeral mode. An ephemeral case runs in memory and is written to the data store only
+   * if it pends. A case is also run in ephemeral mode if its journey specifies so
+   *
+   * @param caseId         the case id
+   * @param journeyJson    the journey definition
+   * @param pvs            the initial process variables. Can be null
+   * @param journeySlaJson the SLA configuration. Can be null
+   * @param isEphemeral    whether the case is to be run in ephemeral mode
+   * @return the process context
+   */
+  public ProcessContext startCase(String caseId, String journeyJson, ProcessVariables pvs, String journeySlaJson, boolean isEphemeral) {
+    return onShard(caseId, () -> startCase(caseId, journeyJson, pvs, journeySlaJson, isEphemeral, null, null));
+  }
+
+  /**
+   * Start a case with a budget which limits each run of the case. When a limit is reached, the case pends in the work
+   * basket of the budget instead of continuing. The budget overrides the one specified in the journey, if any
+   *
+   * @param caseId         the case id
+   * @param journeyJson    the journey definition
+   * @param pvs            the initial process variables. Can be null
+   * @param journeySlaJson the SLA configuration. Can be null
+   * @param budget         the budget applied to each run of the case
+   * @return the process context
+   */
+  public ProcessContext startCase(String caseId, String journeyJson, ProcessVariables pvs, String journeySlaJson, Budget budget) {
+    return onShard(caseId, () -> startCase(caseId, journeyJson, pvs, journeySlaJson, false, null, budget));
+  }
+
+  /**
+   * Start a case of a journey registered with the definition registry. The journey is not parsed as it was parsed
+   * when registered
+   *
+   * @param caseId      the case id
+   * @param journeyName the name of the journey
+   * @param version     the version of the journey. Null for the latest version
+   * @param pvs         the initial process variables. Can be null
+   * @return the process context
+   */
+  public ProcessContext startCaseByName(String caseId, String journeyName, String version, ProcessVariables pvs) {
+    DefinitionRegistry registry = Flowret.instance().getDefinitionRegistry();
+    DefinitionRegistry.Definition def = (registry == null) ? null : registry.get(journeyName, version);
+    if (def == null) {
+      throw new UnifyException("flowret_err_22", journeyName + ((version == null) ? "" : " version " + version));
+    }
+
+    return onShard(caseId, () -> {
+      try {
+        return start(caseId, def.getJourney(), def.getProcessDefinition(), pvs, def.getSla(), def.getSlaMilestones(), false, null, null);
+      }
+      finally {
+        releaseLease();
+      }
+    });
+  }
+
+  // used by a call unit to start a child case
+  protected ProcessContext startCase(String caseId, String journeyJson, ProcessVariables pvs, String journeySlaJson, String parentCaseId) {
+    return startCase(caseId, journeyJson, pvs, journeySlaJson, false, parentCaseId, null);
+  }
+
+  private ProcessContext startCase(String caseId, String journeyJson, ProcessVariables pvs, String journeySlaJson, boolean isEphemeral, String parentCaseId, Budget budget) {
+    try {
+      // read the process definition and the sla configuration
+      DefinitionCache cache = Flowret.instance().getDefinitionCache();
+      Document d = new JDocument(journeyJson);
+      Document slad = (journeySlaJson == null) ? null : new JDocument(journeySlaJson);
+      return start(caseId, d, cache.getProcessDefinition(d), pvs, slad, (slad == null) ? null : cache.getSlaMilestones(slad), isEphemeral, parentCaseId, budget);
+    }
+    finally {
+      releaseLease();
+    }
+  }
+
+  private ProcessContext start(String caseId, Document d, ProcessDefinition pd, ProcessVariables pvs, Document slad, SlaMilestones slaMilestones, boolean isEphemeral, String parentCaseId, Budget budget) {
     if (pvs == null) {
       pvs = new ProcessVariables();
     }
 
-    String key = CONSTS_FLOWRET.DAO.JOURNEY + CONSTS_FLOWRET.DAO.SEP + caseId;
+    this.pd = pd;
+    this.slad = slad;
+    this.slaMilestones = slaMilestones;
+    isEphemeral = isEphemeral || pd.isEphemeral();
 
-    // check if the document already exists
-    Document d = dao.read(key);
-    if (d != null) {
-      throw new UnifyException("flowret_err_1", caseId);
+    if (isEphemeral == true) {
+      // nothing is read from or written to the data store till the end of the run
+      journey = d;
+      pi = Utils.getProcessInfo(caseId, pd);
+      pi.isEphemeral = true;
     }
+    else {
+      String key = CONSTS_FLOWRET.DAO.JOURNEY + CONSTS_FLOWRET.DAO.SEP + caseId;
+      acquireLease(caseId);
 
-    // read the process definition and get process info
-    d = new JDocument(journeyJson);
-    dao.write(CONSTS_FLOWRET.DAO.JOURNEY + CONSTS_FLOWRET.DAO.SEP + caseId, d);
-    pd = Utils.getProcessDefinition(d);
-    pi = Utils.getProcessInfo(dao, caseId, pd);
+      // check if the document already exists
+      if (dao.read(key) != null) {
+        throw new UnifyException("flowret_err_1", caseId);
+      }
 
-    // write and get the sla configuration
-    if (journeySlaJson != null) {
-      slad = new JDocument(journeySlaJson);
-      dao.write(CONSTS_FLOWRET.DAO.JOURNEY_SLA + CONSTS_FLOWRET.DAO.SEP + caseId, slad);
+      // write the process definition and the sla configuration and get process info
+      DefinitionStore.write(getCaseDao(), caseId, d, slad);
+      pi = Utils.getProcessInfo(dao, caseId, pd);
+    }
+    pi.setParentCaseId(parentCaseId);
+    if (budget != null) {
+      pi.setBudget(budget);
     }
 
     // update process variables
@@ -131,22 +249,82 @@ public final class Rts {
     return pc;
   }
 
+  /**
+   * Schedule a case to be started at a given time. The request is persisted and the case is started by the timer service
+   * using the DAO, component factory, event handler and SLA queue manager the timer service was started with
+   *
+   * @param caseId         the case id
+   * @param journeyJson    the journey definition
+   * @param pvs            the initial process variables. Can be null
+   * @param journeySlaJson the SLA configuration. Can be null
+   * @param startAt        the time at which the case is to be started. A time in the past starts the case right away
+   */
+  public void scheduleCase(String caseId, String journeyJson, ProcessVariables pvs, String journeySlaJson, Instant startAt) {
+    if (dao.read(CONSTS_FLOWRET.DAO.JOURNEY + CONSTS_FLOWRET.DAO.SEP + caseId) != null) {
+      throw new UnifyException("flowret_err_1", caseId);
+    }
+
+    String key = CONSTS_FLOWRET.DAO.SCHEDULED_CASE + CONSTS_FLOWRET.DAO.SEP + caseId;
+    if (dao.read(key) != null) {
+      throw new UnifyException("flowret_err_14", caseId);
+    }
+
+    // parse now so that an invalid definition is reported to the caller rather than when the case is due
+    Flowret.instance().getDefinitionCache().getProcessDefinition(new JDocument(journeyJson));
+
+    Document d = new JDocument();
+    d.setString("$.scheduled_case.case_id", caseId);
+    d.setString("$.scheduled_case.journey", journeyJson);
+    if (journeySlaJson != null) {
+      d.setString("$.scheduled_case.journey_sla", journeySlaJson);
+    }
+    d.setLong("$.scheduled_case.start_at", startAt.toEpochMilli());
+    if (pvs != null) {
+      Utils.setProcessVariables(d, "$.scheduled_case.process_variables", pvs.getListOfProcessVariables());
+    }
+    dao.write(key, d);
+
+    Timer timer = new Timer(Timer.START, UUID.randomUUID().toString(), caseId, null, null, startAt.toEpochMilli());
+    TimerService.persist(dao, timer);
+    TimerService ts = Flowret.instance().getTimerService();
+    if (ts != null) {
+      ts.schedule(timer);
+    }
+
+    logger.info("Case id -> " + caseId + ", scheduled case to start at -> " + startAt);
+  }
+
   private ProcessContext resumeCase(String caseId, boolean raiseResumeEvent) {
+    return resumeCase(caseId, raiseResumeEvent, null);
+  }
+
+  private ProcessContext resumeCase(String caseId, boolean raiseResumeEvent, List<ProcessVariable> pvs) {
+    return resumeCase(caseId, raiseResumeEvent, pvs, null);
+  }
+
+  // the exec path if specified is the one to resume in place of the pend exec path as in the case of a signal
+  // delivered to one of several exec paths the case is pended on
+  private ProcessContext resumeCase(String caseId, boolean raiseResumeEvent, List<ProcessVariable> pvs, String execPathName) {
     if (raiseResumeEvent == true) {
       // we are being called on our own
+      // the lease is acquired before reading so that we read what the previous holder of the lease wrote
+      acquireLease(caseId);
+
       // read process definition
       String key = CONSTS_FLOWRET.DAO.JOURNEY + CONSTS_FLOWRET.DAO.SEP + caseId;
       Document d = dao.read(key);
       if (d == null) {
         throw new UnifyException("flowret_err_2", caseId);
       }
-      pd = Utils.getProcessDefinition(d);
+      pd = DefinitionStore.getProcessDefinition(dao, caseId, d);
       pi = Utils.getProcessInfo(dao, caseId, pd);
       pi.isPendAtSameStep = true;
+      if ((execPathName != null) && (pi.getExecPath(execPathName) != null)) {
+        pi.getSetter().setPendExecPath("").setPendExecPath(execPathName);
+      }
 
       // read sla configuration
-      key = CONSTS_FLOWRET.DAO.JOURNEY_SLA + CONSTS_FLOWRET.DAO.SEP + caseId;
-      slad = dao.read(key);
+      slaMilestones = DefinitionStore.getSlaMilestones(dao, caseId, d);
     }
 
     // check if we have already completed
@@ -154,6 +332,12 @@ public final class Rts {
       throw new UnifyException("flowret_err_6", pi.getCaseId());
     }
 
+    if (pvs != null) {
+      for (ProcessVariable pv : pvs) {
+        pi.setProcessVariable(pv);
+      }
+    }
+
     boolean bContinue = true;
     ProcessContext pc = null;
     try {
@@ -171,15 +355,330 @@ public final class Rts {
 
     if (bContinue == true) {
       // initiate on the current thread
+      pi.shardThread = CaseShards.isShardThread() ? Thread.currentThread() : null;
+      pi.startRun();
+      clearChildCases();
       ExecThreadTask task = new ExecThreadTask(this);
       pc = task.execute();
+      writeEphemeral();
+      armTimers();
+
+      // a signal received before the case pended is applied now by resuming the case again. Likewise the child cases
+      // of the call we pended on may have completed while we were running and could not resume us
+      List<ProcessVariable> buffered = registerCorrelations();
+      if (buffered != null) {
+        logger.info("Case id -> " + caseId + ", resuming case with buffered signal");
+        pc = resumeCase(caseId, true, buffered);
+      }
+      else if (registerChildCases() == true) {
+        logger.info("Case id -> " + caseId + ", resuming case as the child cases of the call have completed");
+        pc = resumeCase(caseId, true, null);
+      }
+
+      // a child case started by its parent is checked by the parent itself once started. A child case completing on
+      // a later resume is the one to resume the parent
+      if ((raiseResumeEvent == true) && (pi.getParentCaseId() != null) && (pi.isCaseCompleted() == true)) {
+        resumeParent(pi.getParentCaseId());
+      }
     }
 
     return pc;
   }
 
   public ProcessContext resumeCase(String caseId) {
-    return resumeCase(caseId, true);
+    return resumeCase(caseId, (ProcessVariables)null);
+  }
+
+  /**
+   * Resume a case after updating its process variables
+   *
+   * @param caseId the case id
+   * @param pvs    the process variables to add or update before resuming
+   * @return the process context
+   */
+  public ProcessContext resumeCase(String caseId, ProcessVariables pvs) {
+    return onShard(caseId, () -> {
+      try {
+        return resumeCase(caseId, true, (pvs == null) ? null : pvs.getListOfProcessVariables());
+      }
+      finally {
+        releaseLease();
+      }
+    });
+  }
+
+  // runs the call on the shard of the case if case shards have been started
+  private ProcessContext onShard(String caseId, Supplier<ProcessContext> call) {
+    CaseShards shards = Flowret.instance().getCaseShards();
+    if (shards == null) {
+      return call.get();
+    }
+    return shards.run(caseId, call);
+  }
+
+  /**
+   * Enqueue a request to resume a case. The request is persisted and the case is resumed by a worker of the resume inbox.
+   * Multiple requests pending for a case are merged into a single resume with the process variables of later requests
+   * overriding those of earlier ones. A case is never resumed by more than one worker at a time
+   *
+   * @param caseId the case id
+   * @param pvs    the process variables to add or update before resuming. Can be null
+   */
+  public void enqueueResume(String caseId, ProcessVariables pvs) {
+    if (pvs == null) {
+      pvs = new ProcessVariables();
+    }
+
+    ResumeInbox inbox = Flowret.instance().getResumeInbox();
+    if (inbox != null) {
+      inbox.enqueue(dao, caseId, pvs);
+    }
+    else {
+      // will be picked up when the resume inbox is started
+      ResumeInbox.persist(dao, caseId, pvs);
+    }
+  }
+
+  /**
+   * Deliver a message to the case waiting on the correlation key. The case waiting on the key is resumed after
+   * updating its process variables. If no case is waiting, the signal is buffered and applied as soon as a case pends
+   * on the key. Signals buffered for the same key are merged
+   *
+   * @param key the correlation key
+   * @param pvs the process variables to add or update in the case
+   * @return the process context if a case was resumed else null
+   */
+  public ProcessContext signal(String key, ProcessVariables pvs) {
+    if (pvs == null) {
+      pvs = new ProcessVariables();
+    }
+
+    Correlation corr = Correlation.consume(dao, key, pvs);
+    if (corr == null) {
+      logger.info("No case waiting on correlation key -> " + key + ", signal buffered");
+      return null;
+    }
+
+    // the correlation is consumed only if the resume succeeds so that a failed resume does not lose the signal
+    String caseId = corr.getCaseId();
+    logger.info("Case id -> " + caseId + ", resuming case on signal with correlation key -> " + key + ", execution path -> " + corr.getExecPathName());
+    List<ProcessVariable> list = pvs.getListOfProcessVariables();
+    boolean isSuccess = false;
+    try {
+      ProcessContext pc = onShard(caseId, () -> {
+        try {
+          return resumeCase(caseId, true, list, corr.getExecPathName());
+        }
+        finally {
+          releaseLease();
+        }
+      });
+      isSuccess = true;
+      return pc;
+    }
+    finally {
+      Correlation.setResumed(dao, key, isSuccess);
+    }
+  }
+
+  // an ephemeral case is written to the data store only if it has pended or has been written before. A child case
+  // is also written on completion as the parent case reads its process variables from the data store
+  private void writeEphemeral() {
+    if (pi.isEphemeral == false) {
+      return;
+    }
+
+    boolean isComplete = pi.isCaseCompleted();
+    if ((isComplete == true) && (pi.isPersisted == false) && (pi.getParentCaseId() == null)) {
+      logger.info("Case id -> " + pi.getCaseId() + ", ephemeral case completed without being persisted");
+      return;
+    }
+
+    String caseId = pi.getCaseId();
+    if (pi.isPersisted == false) {
+      // the checks skipped when the case was started are done before the first write
+      acquireLease(caseId);
+      if (dao.read(CONSTS_FLOWRET.DAO.JOURNEY + CONSTS_FLOWRET.DAO.SEP + caseId) != null) {
+        throw new UnifyException("flowret_err_1", caseId);
+      }
+    }
+    if (journey != null) {
+      DefinitionStore.write(getCaseDao(), caseId, journey, slad);
+      journey = null;
+    }
+
+    writeProcessInfo(pi.getDocument());
+
+    // a single audit record for the whole run
+    String compName = "end";
+    if (isComplete == false) {
+      ExecPath ep = pi.getExecPath(pi.getPendExecPath());
+      compName = (ep == null) ? "pend" : ep.getStep();
+    }
+    Utils.writeAuditLog(getCaseDao(), pi, null, null, compName);
+    pi.isPersisted = true;
+  }
+
+  // a resume of the case within the same run, for example to apply a buffered signal, keeps the lease already held
+  private void acquireLease(String caseId) {
+    if (lease == null) {
+      lease = Lease.acquire(dao, caseId);
+    }
+  }
+
+  private void releaseLease() {
+    if (lease != null) {
+      lease.release();
+      lease = null;
+    }
+  }
+
+  // the documents of the case are written with the fencing token of the lease if one is held
+  protected FlowretDao getCaseDao() {
+    return (lease == null) ? dao : lease.getDao();
+  }
+
+  protected void writeProcessInfo(Document d) {
+    getCaseDao().write(CONSTS_FLOWRET.DAO.PROCESS_INFO + CONSTS_FLOWRET.DAO.SEP + pi.getCaseId(), d);
+  }
+
+  protected synchronized void addTimer(Timer timer) {
+    timers.add(timer);
+  }
+
+  protected synchronized void addCorrelation(Correlation corr) {
+    correlations.add(corr);
+  }
+
+  protected synchronized List<Timer> getTimers() {
+    return new ArrayList<>(timers);
+  }
+
+  protected synchronized List<Correlation> getCorrelations() {
+    return new ArrayList<>(correlations);
+  }
+
+  // returns the process variables of the buffered signals if any were found for the correlations else null
+  private synchronized List<ProcessVariable> registerCorrelations() {
+    if (isWarmUp == true) {
+      correlations.clear();
+      return null;
+    }
+
+    List<ProcessVariable> buffered = null;
+    for (Correlation corr : correlations) {
+      List<ProcessVariable> list = Correlation.register(dao, corr);
+      if (list != null) {
+        buffered = (buffered == null) ? new ArrayList<>() : buffered;
+        buffered.addAll(list);
+      }
+    }
+    correlations.clear();
+    return buffered;
+  }
+
+  protected synchronized void addChildCases(String execPathName, List<String> caseIds) {
+    childCases.put(execPathName, caseIds);
+  }
+
+  private synchronized void clearChildCases() {
+    childCases.clear();
+  }
+
+  // writes the child cases of the call the case has pended on for the child cases to find when they complete.
+  // Returns true if they have all completed in the meantime
+  private synchronized boolean registerChildCases() {
+    List<String> caseIds = childCases.get(pi.getPendExecPath());
+    childCases.clear();
+    if ((caseIds == null) || (pi.isCaseCompleted() == true)) {
+      return false;
+    }
+
+    Document d = new JDocument();
+    for (int i = 0; i < caseIds.size(); i++) {
+      d.setArrayValueString("$.call.case_ids[%]", caseIds.get(i), i + "");
+    }
+    getCaseDao().write(CONSTS_FLOWRET.DAO.CALL + CONSTS_FLOWRET.DAO.SEP + pi.getCaseId(), d);
+    return isComplete(dao, caseIds);
+  }
+
+  private static boolean isComplete(FlowretDao dao, List<String> caseIds) {
+    for (String caseId : caseIds) {
+      Document d = dao.read(CONSTS_FLOWRET.DAO.PROCESS_INFO + CONSTS_FLOWRET.DAO.SEP + caseId);
+      if ((d == null) || (Boolean.TRUE.equals(d.getBoolean("$.process_info.is_complete")) == false)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // the parent case is resumed if it has pended on a call unit and this was the last of its child cases to complete.
+  // A parent which is still finishing its run holds its lease and so is tried again after a while
+  private void resumeParent(String parentCaseId) {
+    Flowret.instance().getExecutorService().execute(() -> {
+      for (int attempt = 1; attempt <= MAX_PARENT_ATTEMPTS; attempt++) {
+        try {
+          if (isWaitingOnChildCases(parentCaseId) == true) {
+            logger.info("Case id -> " + parentCaseId + ", resuming parent case as its child cases have completed");
+            new Rts(dao, factory, eventHandler, slaQm).resumeCase(parentCaseId);
+          }
+          return;
+        }
+        catch (UnifyException e) {
+          if ((e.getErrorCode().equals("flowret_err_16") == false) || (attempt == MAX_PARENT_ATTEMPTS)) {
+            logger.error("Case id -> " + parentCaseId + ", error resuming parent case, error message -> " + e.getMessage());
+            return;
+          }
+        }
+
+        try {
+          Thread.sleep(PARENT_RETRY_DELAY_MS * attempt);
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    });
+  }
+
+  private boolean isWaitingOnChildCases(String parentCaseId) {
+    Document d = dao.read(CONSTS_FLOWRET.DAO.PROCESS_INFO + CONSTS_FLOWRET.DAO.SEP + parentCaseId);
+    if ((d == null) || (Boolean.TRUE.equals(d.getBoolean("$.process_info.is_complete")) == true)) {
+      return false;
+    }
+    String epName = d.getString("$.process_info.pend_exec_path");
+    boolean isWaiting = false;
+    int size = d.getArraySize("$.process_info.exec_paths[]");
+    for (int i = 0; i < size; i++) {
+      if (d.getString("$.process_info.exec_paths[%].name", i + "").equals(epName)) {
+        isWaiting = "flowret_call".equals(d.getString("$.process_info.exec_paths[%].pend_workbasket", i + ""));
+        break;
+      }
+    }
+    if (isWaiting == false) {
+      return false;
+    }
+
+    Document cd = dao.read(CONSTS_FLOWRET.DAO.CALL + CONSTS_FLOWRET.DAO.SEP + parentCaseId);
+    if (cd == null) {
+      return false;
+    }
+    List<String> caseIds = new ArrayList<>();
+    for (int i = 0; i < cd.getArraySize("$.call.case_ids[]"); i++) {
+      caseIds.add(cd.getArrayValueString("$.call.case_ids[%]", i + ""));
+    }
+    return isComplete(dao, caseIds);
+  }
+
+  private synchronized void armTimers() {
+    TimerService ts = Flowret.instance().getTimerService();
+    if ((ts != null) && (isWarmUp == false)) {
+      for (Timer timer : timers) {
+        ts.schedule(timer);
+      }
+    }
+    timers.clear();
   }
 
   private void raiseSlaEvent(EventType event, ProcessContext pc) {
@@ -188,7 +687,7 @@ public final class Rts {
 
     switch (event) {
       case ON_PROCESS_START: {
-        Utils.enqueueCaseStartMilestones(pc, slad, slaQm);
+        Utils.enqueueCaseStartMilestones(pc, slaMilestones, slaQm);
         break;
       }
 
@@ -206,8 +705,8 @@ public final class Rts {
             Utils.dequeueWorkBasketMilestones(pc, prevPendWorkBasket, slaQm);
             Utils.dequeueWorkBasketMilestones(pc, tbcWorkBasket, slaQm);
           }
-          Utils.enqueueWorkBasketMilestones(pc, SlaMilestoneSetupOn.work_basket_exit, prevPendWorkBasket, slad, slaQm);
-          Utils.enqueueWorkBasketMilestones(pc, SlaMilestoneSetupOn.work_basket_entry, pendWorkBasket, slad, slaQm);
+          Utils.enqueueWorkBasketMilestones(pc, SlaMilestoneSetupOn.work_basket_exit, prevPendWorkBasket, slaMilestones, slaQm);
+          Utils.enqueueWorkBasketMilestones(pc, SlaMilestoneSetupOn.work_basket_entry, pendWorkBasket, slaMilestones, slaQm);
           ep.setTbcSlaWorkBasket("");
           break;
         }
@@ -217,29 +716,29 @@ public final class Rts {
           // means that the first pend at this step was a pend_eor or error pend
           if (ep.getUnitResponseType() == UnitResponseType.ERROR_PEND) {
             if (prevPendWorkBasket.equals(tbcWorkBasket)) {
-              Utils.enqueueWorkBasketMilestones(pc, SlaMilestoneSetupOn.work_basket_entry, pendWorkBasket, slad, slaQm);
+              Utils.enqueueWorkBasketMilestones(pc, SlaMilestoneSetupOn.work_basket_entry, pendWorkBasket, slaMilestones, slaQm);
             }
             else {
               Utils.dequeueWorkBasketMilestones(pc, prevPendWorkBasket, slaQm);
-              Utils.enqueueWorkBasketMilestones(pc, SlaMilestoneSetupOn.work_basket_exit, prevPendWorkBasket, slad, slaQm);
-              Utils.enqueueWorkBasketMilestones(pc, SlaMilestoneSetupOn.work_basket_entry, pendWorkBasket, slad, slaQm);
+              Utils.enqueueWorkBasketMilestones(pc, SlaMilestoneSetupOn.work_basket_exit, prevPendWorkBasket, slaMilestones, slaQm);
+              Utils.enqueueWorkBasketMilestones(pc, SlaMilestoneSetupOn.work_basket_entry, pendWorkBasket, slaMilestones, slaQm);
             }
           }
           else if (ep.getUnitResponseType() == UnitResponseType.OK_PEND_EOR) {
             if (prevPendWorkBasket.equals(tbcWorkBasket)) {
               Utils.dequeueWorkBasketMilestones(pc, prevPendWorkBasket, slaQm);
-              Utils.enqueueWorkBasketMilestones(pc, SlaMilestoneSetupOn.work_basket_exit, prevPendWorkBasket, slad, slaQm);
-              Utils.enqueueWorkBasketMilestones(pc, SlaMilestoneSetupOn.work_basket_entry, pendWorkBasket, slad, slaQm);
+              Utils.enqueueWorkBasketMilestones(pc, SlaMilestoneSetupOn.work_basket_exit, prevPendWorkBasket, slaMilestones, slaQm);
+              Utils.enqueueWorkBasketMilestones(pc, SlaMilestoneSetupOn.work_basket_entry, pendWorkBasket, slaMilestones, slaQm);
               ep.setTbcSlaWorkBasket(pendWorkBasket);
             }
             else {
               Utils.dequeueWorkBasketMilestones(pc, prevPendWorkBasket, slaQm);
-              Utils.enqueueWorkBasketMilestones(pc, SlaMilestoneSetupOn.work_basket_exit, prevPendWorkBasket, slad, slaQm);
+              Utils.enqueueWorkBasketMilestones(pc, SlaMilestoneSetupOn.work_basket_exit, prevPendWorkBasket, slaMilestones, slaQm);
 
               if (pendWorkBasket.equals(tbcWorkBasket) == false) {
                 Utils.dequeueWorkBasketMilestones(pc, tbcWorkBasket, slaQm);
-                Utils.enqueueWorkBasketMilestones(pc, SlaMilestoneSetupOn.work_basket_exit, tbcWorkBasket, slad, slaQm);
-                Utils.enqueueWorkBasketMilestones(pc, SlaMilestoneSetupOn.work_basket_entry, pendWorkBasket, slad, slaQm);
+                Utils.enqueueWorkBasketMilestones(pc, SlaMilestoneSetupOn.work_basket_exit, tbcWorkBasket, slaMilestones, slaQm);
+                Utils.enqueueWorkBasketMilestones(pc, SlaMilestoneSetupOn.work_basket_entry, pendWorkBasket, slaMilestones, slaQm);
                 ep.setTbcSlaWorkBasket(pendWorkBasket);
               }
               else {
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+import com.americanexpress.unify.jdocs.Document;
+import com.americanexpress.unify.jdocs.JDocument;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * @author Deepak Arora
+ */
+
+// The milestones of an SLA configuration grouped on when they are to be set up. Built once per SLA configuration and
+// shared across cases. A new document is handed out on each call as the SLA queue manager may change it
+public class SlaMilestones {
+
+  // milestones json keyed on the setup on value followed by the work basket name for work basket milestones
+  private Map<String, String> milestones = new HashMap<>();
+
+  protected SlaMilestones(Document slad) {
+    Map<String, Document> map = new HashMap<>();
+    int size = slad.getArraySize("$.milestones[]");
+
+    for (int i = 0; i < size; i++) {
+      String setupOn = slad.getString("$.milestones[%].setup_on", i + "");
+      String key = setupOn;
+      if (setupOn.equals(SlaMilestoneSetupOn.case_start.toString()) == false) {
+        key = getKey(SlaMilestoneSetupOn.valueOf(setupOn), slad.getString("$.milestones[%].work_basket_name", i + ""));
+      }
+
+      Document md = map.get(key);
+      if (md == null) {
+        md = new JDocument();
+        map.put(key, md);
+      }
+      md.setContent(slad, "$.milestones[%]", "$.milestones[%]", i + "", md.getArraySize("$.milestones[]") + "");
+    }
+
+    for (Map.Entry<String, Document> entry : map.entrySet()) {
+      milestones.put(entry.getKey(), entry.getValue().getJson());
+    }
+  }
+
+  private static String getKey(SlaMilestoneSetupOn setupOn, String wb) {
+    return setupOn.toString() + "|" + wb;
+  }
+
+  // returns the milestones to be set up on case start or null if there are none
+  protected Document getCaseStartMilestones() {
+    String json = milestones.get(SlaMilestoneSetupOn.case_start.toString());
+    return (json == null) ? null : new JDocument(json);
+  }
+
+  // returns the milestones to be set up on entry or exit of the work basket or null if there are none
+  protected Document getWorkBasketMilestones(SlaMilestoneSetupOn setupOn, String wb) {
+    String json = milestones.get(getKey(setupOn, wb));
+    return (json == null) ? null : new JDocument(json);
+  }
+
+}
@@ -14,6 +14,8 @@
 
 package com.americanexpress.unify.flowret;
 
+import java.util.Set;
+
 /*
  * @author Deepak Arora
  */
@@ -23,13 +25,65 @@ public class Step extends Unit {
   private String componentName = null;
   private String userData = null;
 
+  // names of the process variables read and written by this step. These are optional and are
+  // used in dataflow mode to determine which consecutive steps can be run in parallel
+  // null means that the step has not declared them
+  private Set<String> reads = null;
+  private Set<String> writes = null;
+
+  // true if the step can be run more than once with the same effect. Only such steps are started ahead of their turn
+  // in dataflow mode as their output is discarded and they are run again if an earlier step pends or raises a ticket
+  private boolean isIdempotent = false;
+
+  // the name of the component which undoes the effect of this step. Run by a compensate ticket
+  private String compensateName = null;
+
   protected Step(String name, String componentName, String next, String userData) {
-    super(name, UnitType.STEP);
+    this(name, componentName, next, userData, UnitType.STEP);
+  }
+
+  protected Step(String name, String componentName, String next, String userData, UnitType type) {
+    super(name, type);
     this.next = next;
     this.componentName = componentName;
     this.userData = userData;
   }
 
+  protected Step(String name, String componentName, String next, String userData, Set<String> reads, Set<String> writes) {
+    this(name, componentName, next, userData);
+    this.reads = reads;
+    this.writes = writes;
+  }
+
+  protected Set<String> getReads() {
+    return reads;
+  }
+
+  protected Set<String> getWrites() {
+    return writes;
+  }
+
+  protected boolean isDataflowDeclared() {
+    return (reads != null) && (writes != null);
+  }
+
+  protected boolean isIdempotent() {
+    return isIdempotent;
+  }
+
+  protected void setIdempotent(boolean isIdempotent) {
+    this.isIdempotent = isIdempotent;
+  }
+
+  protected String getCompensateName() {
+    return compensateName;
+  }
+
+  protected void setCompensateName(String compensateName) {
+    this.compensateName = compensateName;
+  }
+
+  @Override
   protected String getNext() {
     return next;
   }
@@ -25,6 +25,7 @@ public class StepResponse {
   private String ticket = "";
   private String workBasket = "";
   private ErrorTuple errorTuple = new ErrorTuple();
+  private String correlationKey = null;
 
   public StepResponse(UnitResponseType unitResponseType, String ticket, String workBasket) {
     init(unitResponseType, ticket, workBasket, new ErrorTuple());
@@ -61,4 +62,18 @@ public class StepResponse {
     return errorTuple;
   }
 
+  public String getCorrelationKey() {
+    return correlationKey;
+  }
+
+  /**
+   * Set the key of the message the step is waiting for. Only used when the step pends. The case can then be resumed by
+   * calling signal on the run time service with the same key
+   *
+   * @param correlationKey the correlation key
+   */
+  public void setCorrelationKey(String correlationKey) {
+    this.correlationKey = correlationKey;
+  }
+
 }
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+/*
+ * @author Deepak Arora
+ */
+public class Stream extends Step {
+
+  // the component of the producer is the component of the step
+  private String consumerName = null;
+  private int consumers = 1;
+  private int capacity = 100;
+
+  protected Stream(String name, String componentName, String consumerName, String next, String userData, int consumers, int capacity) {
+    super(name, componentName, next, userData, UnitType.STREAM);
+    this.consumerName = consumerName;
+    this.consumers = consumers;
+    this.capacity = capacity;
+  }
+
+  protected String getConsumerName() {
+    return consumerName;
+  }
+
+  protected int getConsumers() {
+    return consumers;
+  }
+
+  protected int getCapacity() {
+    return capacity;
+  }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * @author Deepak Arora
+ */
+public class StreamChannel {
+
+  private final BlockingQueue<String> queue;
+
+  // used to process an item on the thread of the producer when the channel is full
+  private InvokableConsumer overflowConsumer = null;
+
+  private volatile boolean isClosed = false;
+
+  // the first response other than OK_PROCEED returned by a consumer
+  private volatile StepResponse failure = null;
+
+  protected StreamChannel(int capacity) {
+    this.queue = new ArrayBlockingQueue<>(capacity);
+  }
+
+  protected void setOverflowConsumer(InvokableConsumer overflowConsumer) {
+    this.overflowConsumer = overflowConsumer;
+  }
+
+  /**
+   * Puts an item in the channel. If the channel is full, the item is processed on the calling thread
+   * thereby slowing down the producer to the speed of the consumers
+   *
+   * @param item the item
+   * @return false if the stream has failed in which case the producer should stop producing
+   */
+  public boolean put(String item) {
+    if (failure != null) {
+      return false;
+    }
+
+    if (queue.offer(item) == false) {
+      setResponse(consume(overflowConsumer, item));
+    }
+
+    return (failure == null);
+  }
+
+  // run by each consumer till the producer is done and the channel is empty or till the stream fails
+  protected void drain(InvokableConsumer consumer) {
+    while (failure == null) {
+      String item = null;
+      try {
+        item = queue.poll(50, TimeUnit.MILLISECONDS);
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        setResponse(new StepResponse(UnitResponseType.ERROR_PEND, null, "flowret_error"));
+        break;
+      }
+
+      if (item == null) {
+        if (isClosed && queue.isEmpty()) {
+          break;
+        }
+        continue;
+      }
+
+      setResponse(consume(consumer, item));
+    }
+  }
+
+  private static StepResponse consume(InvokableConsumer consumer, String item) {
+    try {
+      return consumer.consume(item);
+    }
+    catch (Exception e) {
+      return new StepResponse(UnitResponseType.ERROR_PEND, null, "flowret_error");
+    }
+  }
+
+  protected void close() {
+    isClosed = true;
+  }
+
+  protected synchronized void setResponse(StepResponse resp) {
+    if ((failure == null) && (resp.getUnitResponseType() != UnitResponseType.OK_PROCEED)) {
+      failure = resp;
+    }
+  }
+
+  protected boolean isFailed() {
+    return (failure != null);
+  }
+
+  protected StepResponse getFailure() {
+    return failure;
+  }
+
+}
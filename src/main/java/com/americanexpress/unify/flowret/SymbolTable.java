@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * @author Deepak Arora
+ */
+
+// Canonical instances of the names used by the cases of a process definition. The table is seeded with the names of
+// the units, components, branches, tickets and process variables of the definition when it is compiled. Names read
+// from the process info of a case, which also include work baskets and execution paths, are replaced by the canonical
+// instance so that the many cases of a journey held in memory share one instance of each name rather than each
+// holding its own copy. Names not in the definition are added as they are seen up to a limit so that names which are
+// unique to a case, like the execution paths of a large for each route, cannot grow the table without bound
+public class SymbolTable {
+
+  // the maximum number of names added to the table after the definition is compiled
+  private static final int MAX_ADDED = 4096;
+
+  private final Map<String, String> symbols = new ConcurrentHashMap<>();
+  private final int seeded;
+
+  protected SymbolTable(ProcessDefinition pd) {
+    add(ProcessDefinition.END.getName());
+    for (Unit unit : pd.getUnits()) {
+      add(unit.getName());
+      add(unit.getComponentName());
+      if (unit instanceof Route) {
+        for (Branch branch : ((Route)unit).getBranches()) {
+          add(branch.getName());
+        }
+      }
+    }
+    for (Ticket ticket : pd.getTickets()) {
+      add(ticket.getName());
+      add(ticket.getStep());
+    }
+    for (ProcessVariable pv : pd.getProcessVariables()) {
+      add(pv.getName());
+    }
+    seeded = symbols.size();
+  }
+
+  private void add(String s) {
+    if (s != null) {
+      symbols.putIfAbsent(s, s);
+    }
+  }
+
+  // returns the canonical instance of the name
+  protected String intern(String s) {
+    if ((s == null) || s.isEmpty()) {
+      return s;
+    }
+
+    String symbol = symbols.get(s);
+    if (symbol != null) {
+      return symbol;
+    }
+
+    if (symbols.size() - seeded >= MAX_ADDED) {
+      return s;
+    }
+
+    symbol = symbols.putIfAbsent(s, s);
+    return (symbol == null) ? s : symbol;
+  }
+
+  protected int size() {
+    return symbols.size();
+  }
+
+}
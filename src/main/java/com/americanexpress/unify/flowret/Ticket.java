@@ -22,11 +22,26 @@ public class Ticket {
   private String name = null;
   private String step = null;
 
+  // the unit named by step. Set when the process definition is compiled
+  private Unit stepUnit = null;
+
+  // whether the compensating components of the completed steps are to be run before moving to the step
+  private boolean isCompensate = false;
+
+  // maximum number of compensating components run in parallel
+  private int maxConcurrency = 1;
+
   protected Ticket(String name, String step) {
     this.name = name;
     this.step = step;
   }
 
+  protected Ticket(String name, String step, boolean isCompensate, int maxConcurrency) {
+    this(name, step);
+    this.isCompensate = isCompensate;
+    this.maxConcurrency = maxConcurrency;
+  }
+
   protected String getName() {
     return name;
   }
@@ -35,4 +50,20 @@ public class Ticket {
     return step;
   }
 
+  protected Unit getStepUnit() {
+    return stepUnit;
+  }
+
+  protected void setStepUnit(Unit stepUnit) {
+    this.stepUnit = stepUnit;
+  }
+
+  protected boolean isCompensate() {
+    return isCompensate;
+  }
+
+  protected int getMaxConcurrency() {
+    return maxConcurrency;
+  }
+
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+/*
+ * @author Deepak Arora
+ */
+public class Timer {
+
+  // a timer either resumes a case pended at a pause or starts a scheduled case
+  protected static final String RESUME = "resume";
+  protected static final String START = "start";
+
+  private String type = RESUME;
+  private String id = null;
+  private String caseId = null;
+  private String execPathName = null;
+  private String pauseName = null;
+  private volatile long wakeAt = 0;
+
+  // the number of times the timer has fired without its case being resumed
+  private volatile int failures = 0;
+
+  protected Timer(String id, String caseId, String execPathName, String pauseName, long wakeAt) {
+    this(RESUME, id, caseId, execPathName, pauseName, wakeAt);
+  }
+
+  protected Timer(String type, String id, String caseId, String execPathName, String pauseName, long wakeAt) {
+    this.type = type;
+    this.id = id;
+    this.caseId = caseId;
+    this.execPathName = execPathName;
+    this.pauseName = pauseName;
+    this.wakeAt = wakeAt;
+  }
+
+  protected String getType() {
+    return type;
+  }
+
+  protected String getId() {
+    return id;
+  }
+
+  protected String getCaseId() {
+    return caseId;
+  }
+
+  protected String getExecPathName() {
+    return execPathName;
+  }
+
+  protected String getPauseName() {
+    return pauseName;
+  }
+
+  protected long getWakeAt() {
+    return wakeAt;
+  }
+
+  protected void setWakeAt(long wakeAt) {
+    this.wakeAt = wakeAt;
+  }
+
+  protected int incrFailures() {
+    return ++failures;
+  }
+
+}
@@ -0,0 +1,409 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+import com.americanexpress.unify.flowret.CONSTS_FLOWRET.DAO;
+import com.americanexpress.unify.jdocs.Document;
+import com.americanexpress.unify.jdocs.JDocument;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * @author Deepak Arora
+ */
+public class TimerService {
+
+  private static Logger logger = LogManager.getLogger(TimerService.class);
+
+  // timers are indexed in the data store by the hour in which they are due
+  private static final long BUCKET_MS = 3600000;
+  private static final String INDEX_SEQ = "flowret_timer_index_seq";
+  private static final String BUCKET_SEQ = "flowret_timer_bucket_seq";
+  private static final long TICK_MS = 100;
+  private static final int WHEEL_SIZE = 64;
+
+  // wait before checking again a timer whose execution path is paused but is not the one the case is pended on
+  private static final long RECHECK_MS = 60000;
+
+  // first wait before firing again a timer whose case could not be resumed. Doubles on each failure up to RECHECK_MS
+  private static final long RETRY_MS = 1000;
+
+  private FlowretDao dao = null;
+  private ProcessComponentFactory factory = null;
+  private EventHandler eventHandler = null;
+  private ISlaQueueManager slaQm = null;
+  private Semaphore resumes = null;
+  private RateLimiter startLimiter = null;
+  private LinkedBlockingQueue<Timer> starts = new LinkedBlockingQueue<>();
+  private Thread starter = null;
+  private DelayQueue<TimingWheel.Bucket> queue = new DelayQueue<>();
+  private LinkedBlockingQueue<Timer> due = new LinkedBlockingQueue<>();
+  private TimingWheel wheel = null;
+  private Thread ticker = null;
+  private volatile boolean isRunning = false;
+  private AtomicLong timersScheduled = new AtomicLong();
+
+  protected TimerService(FlowretDao dao, ProcessComponentFactory factory, EventHandler eventHandler, ISlaQueueManager slaQm, int maxConcurrentResumes, int maxStartsPerSecond) {
+    this.dao = dao;
+    this.factory = factory;
+    this.eventHandler = eventHandler;
+    this.slaQm = slaQm;
+    this.resumes = new Semaphore(maxConcurrentResumes);
+    if (maxStartsPerSecond > 0) {
+      this.startLimiter = new RateLimiter(maxStartsPerSecond);
+    }
+  }
+
+  // persist the timer and add it to the index so that it can be recovered on start up. Each entry of the index and
+  // each timer of an hour is a document of its own numbered using a counter of the DAO. Timers are therefore added by
+  // any node without reading or rewriting a document shared with other timers
+  protected static void persist(FlowretDao dao, Timer timer) {
+    Document d = new JDocument();
+    d.setString("$.timer.type", timer.getType());
+    d.setString("$.timer.id", timer.getId());
+    d.setString("$.timer.case_id", timer.getCaseId());
+    if (timer.getType().equals(Timer.RESUME)) {
+      d.setString("$.timer.exec_path", timer.getExecPathName());
+      d.setString("$.timer.pause", timer.getPauseName());
+    }
+    d.setLong("$.timer.wake_at", timer.getWakeAt());
+    d.setString("$.timer.status", "pending");
+    dao.write(DAO.TIMER + DAO.SEP + timer.getId(), d);
+
+    String bucket = (timer.getWakeAt() / BUCKET_MS) + "";
+    String key = DAO.TIMER_BUCKET + DAO.SEP + bucket;
+    long slot = dao.incrCounter(BUCKET_SEQ + DAO.SEP + bucket);
+    Document bd = new JDocument();
+    bd.setString("$.timer_id", timer.getId());
+    dao.write(key + DAO.SEP + slot, bd);
+
+    // the first timer of an hour adds the hour to the index. The marker is written after the index entry so that a
+    // crash in between adds the hour again rather than not at all. Two nodes adding the same hour is harmless
+    if (dao.read(key) == null) {
+      long seq = dao.incrCounter(INDEX_SEQ);
+      Document id = new JDocument();
+      id.setString("$.bucket", bucket);
+      dao.write(DAO.TIMER_INDEX + DAO.SEP + seq, id);
+      dao.write(key, id);
+    }
+  }
+
+  /**
+   * Method that starts the timer service. Timers persisted earlier are recovered and the ones which are already due are fired
+   */
+  public synchronized void start() {
+    if (isRunning == true) {
+      return;
+    }
+
+    wheel = new TimingWheel(TICK_MS, WHEEL_SIZE, System.currentTimeMillis(), queue);
+    isRunning = true;
+    recover();
+
+    ticker = new Thread(() -> tick(), "flowret-timer");
+    ticker.setDaemon(true);
+    ticker.start();
+
+    starter = new Thread(() -> startCases(), "flowret-timer-start");
+    starter.setDaemon(true);
+    starter.start();
+  }
+
+  /**
+   * Method that stops the timer service. Timers not yet fired remain persisted and are recovered on the next start
+   */
+  public synchronized void stop() {
+    if (isRunning == false) {
+      return;
+    }
+
+    isRunning = false;
+    ticker.interrupt();
+    starter.interrupt();
+    try {
+      ticker.join();
+      starter.join();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  protected void schedule(Timer timer) {
+    if (isRunning == false) {
+      // will be picked up on start
+      return;
+    }
+
+    timersScheduled.incrementAndGet();
+    synchronized (this) {
+      if (wheel.add(timer) == false) {
+        due.add(timer);
+      }
+    }
+  }
+
+  /**
+   * @return the number of timers scheduled since the timer service was started, including the ones scheduled again
+   * after their case could not be resumed
+   */
+  public long getTimersScheduled() {
+    return timersScheduled.get();
+  }
+
+  private void recover() {
+    Document cd = dao.read(DAO.TIMER_INDEX + DAO.SEP + "checkpoint");
+    long from = (cd == null) ? 0 : cd.getLong("$.checkpoint.seq");
+
+    // taking a number from the counter tells us where the index ends. It is written as an empty entry so that it
+    // does not hold the checkpoint back. A number with no entry yet may still be in the course of being written
+    long to = dao.incrCounter(INDEX_SEQ);
+    dao.write(DAO.TIMER_INDEX + DAO.SEP + to, new JDocument());
+
+    // the checkpoint moves over the entries of hours in the past whose timers have all been fired
+    long currentBucket = System.currentTimeMillis() / BUCKET_MS;
+    long checkpoint = from;
+    Map<String, Boolean> buckets = new HashMap<>();
+    int count = 0;
+    for (long seq = from; seq <= to; seq++) {
+      Document d = dao.read(DAO.TIMER_INDEX + DAO.SEP + seq);
+      String bucket = (d == null) ? null : d.getString("$.bucket");
+      boolean isNeeded = (d == null);
+      if (bucket != null) {
+        Boolean b = buckets.get(bucket);
+        if (b == null) {
+          int n = recoverBucket(bucket);
+          count += n;
+          b = (n > 0) || (Long.parseLong(bucket) >= currentBucket);
+          buckets.put(bucket, b);
+        }
+        isNeeded = b;
+      }
+      if ((isNeeded == false) && (checkpoint == seq)) {
+        checkpoint++;
+      }
+    }
+
+    if (checkpoint > from) {
+      Document d = new JDocument();
+      d.setLong("$.checkpoint.seq", checkpoint);
+      dao.write(DAO.TIMER_INDEX + DAO.SEP + "checkpoint", d);
+    }
+
+    logger.info("Recovered timers -> " + count);
+  }
+
+  // schedules the pending timers of the hour and returns their number
+  private int recoverBucket(String bucket) {
+    int count = 0;
+    long to = dao.incrCounter(BUCKET_SEQ + DAO.SEP + bucket);
+    for (long slot = 0; slot < to; slot++) {
+      Document d = dao.read(DAO.TIMER_BUCKET + DAO.SEP + bucket + DAO.SEP + slot);
+      Timer timer = (d == null) ? null : readTimer(d.getString("$.timer_id"));
+      if (timer != null) {
+        schedule(timer);
+        count++;
+      }
+    }
+    return count;
+  }
+
+  // returns null if the timer does not exist or is no longer pending
+  private Timer readTimer(String id) {
+    Document d = dao.read(DAO.TIMER + DAO.SEP + id);
+    if ((d == null) || (d.getString("$.timer.status").equals("pending") == false)) {
+      return null;
+    }
+    String type = d.getString("$.timer.type");
+    type = (type == null) ? Timer.RESUME : type;
+    return new Timer(type, id, d.getString("$.timer.case_id"), d.getString("$.timer.exec_path"), d.getString("$.timer.pause"), d.getLong("$.timer.wake_at"));
+  }
+
+  private void tick() {
+    while (isRunning == true) {
+      try {
+        TimingWheel.Bucket bucket = queue.poll(TICK_MS, TimeUnit.MILLISECONDS);
+        while (bucket != null) {
+          synchronized (this) {
+            wheel.advanceClock(bucket.getExpiration());
+            for (Timer timer : bucket.flush()) {
+              if (wheel.add(timer) == false) {
+                due.add(timer);
+              }
+            }
+          }
+          bucket = queue.poll();
+        }
+
+        // we block here if the maximum number of resumes are already running
+        Timer timer = due.poll();
+        while (timer != null) {
+          if (timer.getType().equals(Timer.START)) {
+            // starts are handed over so that they can be rate limited without holding up resumes
+            starts.add(timer);
+          }
+          else {
+            dispatch(timer);
+          }
+          timer = due.poll();
+        }
+      }
+      catch (InterruptedException e) {
+        // we are being stopped
+        break;
+      }
+      catch (Exception e) {
+        logger.error("Error encountered in timer service, error message -> " + e.getMessage());
+      }
+    }
+  }
+
+  // starts cases which are due at a rate not exceeding the configured maximum so that a burst of
+  // cases scheduled for the same time is spread out
+  private void startCases() {
+    while (isRunning == true) {
+      try {
+        Timer timer = starts.take();
+        if (startLimiter != null) {
+          startLimiter.acquire();
+        }
+        dispatch(timer);
+      }
+      catch (InterruptedException e) {
+        // we are being stopped
+        break;
+      }
+      catch (Exception e) {
+        logger.error("Error encountered in timer service, error message -> " + e.getMessage());
+      }
+    }
+  }
+
+  private void dispatch(Timer timer) throws InterruptedException {
+    resumes.acquire();
+    Flowret.instance().getExecutorService().execute(() -> {
+      try {
+        if (timer.getType().equals(Timer.START)) {
+          start(timer);
+        }
+        else {
+          fire(timer);
+        }
+      }
+      finally {
+        resumes.release();
+      }
+    });
+  }
+
+  private void start(Timer timer) {
+    String caseId = timer.getCaseId();
+    String key = DAO.TIMER + DAO.SEP + timer.getId();
+    Document td = dao.read(key);
+    if ((td == null) || (td.getString("$.timer.status").equals("pending") == false)) {
+      return;
+    }
+
+    String status = "cancelled";
+    Document sd = dao.read(DAO.SCHEDULED_CASE + DAO.SEP + caseId);
+    if ((sd != null) && (dao.read(DAO.JOURNEY + DAO.SEP + caseId) == null)) {
+      logger.info("Case id -> " + caseId + ", starting scheduled case");
+      status = "fired";
+      try {
+        ProcessVariables pvs = new ProcessVariables();
+        for (ProcessVariable pv : Utils.getProcessVariables(sd, "$.scheduled_case.process_variables")) {
+          pvs.setValue(pv.getName(), pv.getType(), pv.getValue());
+        }
+        Rts rts = new Rts(dao, factory, eventHandler, slaQm);
+        rts.startCase(caseId, sd.getString("$.scheduled_case.journey"), pvs, sd.getString("$.scheduled_case.journey_sla"));
+      }
+      catch (Exception e) {
+        // as for resumes, the timer stays pending and fires again after a backoff
+        long delay = Math.min(RETRY_MS << Math.min(timer.incrFailures() - 1, 16), RECHECK_MS);
+        logger.error("Case id -> " + caseId + ", error starting scheduled case, retrying in ms -> " + delay + ", error message -> " + e.getMessage());
+        timer.setWakeAt(System.currentTimeMillis() + delay);
+        schedule(timer);
+        return;
+      }
+    }
+
+    // as for resumes, a crash before this write will result in the start being attempted again which is
+    // harmless as the case will already exist
+    td.setString("$.timer.status", status);
+    dao.write(key, td);
+  }
+
+  private void fire(Timer timer) {
+    String caseId = timer.getCaseId();
+    String key = DAO.TIMER + DAO.SEP + timer.getId();
+    Document td = dao.read(key);
+    if ((td == null) || (td.getString("$.timer.status").equals("pending") == false)) {
+      return;
+    }
+
+    // we only resume if the case is still pended at the pause which set the timer
+    boolean isPaused = false;
+    boolean isPended = false;
+    Document pid = dao.read(DAO.PROCESS_INFO + DAO.SEP + caseId);
+    if ((pid != null) && (Boolean.TRUE.equals(pid.getBoolean("$.process_info.is_complete")) == false)) {
+      int size = pid.getArraySize("$.process_info.exec_paths[]");
+      for (int i = 0; i < size; i++) {
+        if (timer.getExecPathName().equals(pid.getString("$.process_info.exec_paths[%].name", i + ""))) {
+          isPaused = timer.getId().equals(pid.getString("$.process_info.exec_paths[%].timer_id", i + ""));
+          break;
+        }
+      }
+      isPended = isPaused && timer.getExecPathName().equals(pid.getString("$.process_info.pend_exec_path"));
+    }
+
+    if ((isPaused == true) && (isPended == false)) {
+      // the case is pended on another execution path and so we check again later
+      timer.setWakeAt(System.currentTimeMillis() + RECHECK_MS);
+      schedule(timer);
+      return;
+    }
+
+    if (isPended == true) {
+      logger.info("Case id -> " + caseId + ", timer fired for pause -> " + timer.getPauseName() + ", execution path -> " + timer.getExecPathName());
+      try {
+        Rts rts = new Rts(dao, factory, eventHandler, slaQm);
+        rts.resumeCase(caseId);
+      }
+      catch (Exception e) {
+        // the timer stays pending and fires again after a backoff, for example once another node has released the
+        // lease of the case. If the case has moved on by then, the timer is cancelled
+        long delay = Math.min(RETRY_MS << Math.min(timer.incrFailures() - 1, 16), RECHECK_MS);
+        logger.error("Case id -> " + caseId + ", error resuming case on timer, retrying in ms -> " + delay + ", error message -> " + e.getMessage());
+        timer.setWakeAt(System.currentTimeMillis() + delay);
+        schedule(timer);
+        return;
+      }
+    }
+
+    // marking the timer after the resume means that a crash in between fires the timer again which is harmless
+    // as the resumed case will no longer be pended at the pause
+    td.setString("$.timer.status", (isPended == true) ? "fired" : "cancelled");
+    dao.write(key, td);
+  }
+
+}
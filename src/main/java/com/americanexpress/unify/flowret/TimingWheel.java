@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * @author Deepak Arora
+ */
+
+// A hierarchical timing wheel. Each wheel has a fixed number of buckets each covering tickMs milliseconds.
+// Timers which are too far out for a wheel go to an overflow wheel whose tick is the full span of this wheel.
+// Only buckets which hold timers are put in the delay queue and so an idle wheel costs nothing. When a bucket
+// of an overflow wheel expires, its timers are added again and fall through to the finer wheels
+public class TimingWheel {
+
+  private long tickMs = 0;
+  private int wheelSize = 0;
+  private long interval = 0;
+  private long currentTime = 0;
+  private Bucket[] buckets = null;
+  private TimingWheel overflow = null;
+  private DelayQueue<Bucket> queue = null;
+
+  protected TimingWheel(long tickMs, int wheelSize, long startMs, DelayQueue<Bucket> queue) {
+    this.tickMs = tickMs;
+    this.wheelSize = wheelSize;
+    this.interval = tickMs * wheelSize;
+    this.currentTime = startMs - (startMs % tickMs);
+    this.queue = queue;
+    buckets = new Bucket[wheelSize];
+    for (int i = 0; i < wheelSize; i++) {
+      buckets[i] = new Bucket();
+    }
+  }
+
+  // returns false if the timer is already due in which case it has not been added
+  protected boolean add(Timer timer) {
+    long wakeAt = timer.getWakeAt();
+
+    if (wakeAt < currentTime + tickMs) {
+      return false;
+    }
+
+    if (wakeAt < currentTime + interval) {
+      long virtualId = wakeAt / tickMs;
+      Bucket bucket = buckets[(int)(virtualId % wheelSize)];
+      bucket.add(timer);
+      if (bucket.setExpiration(virtualId * tickMs) == true) {
+        queue.offer(bucket);
+      }
+      return true;
+    }
+
+    if (overflow == null) {
+      overflow = new TimingWheel(interval, wheelSize, currentTime, queue);
+    }
+    return overflow.add(timer);
+  }
+
+  protected void advanceClock(long timeMs) {
+    if (timeMs >= currentTime + tickMs) {
+      currentTime = timeMs - (timeMs % tickMs);
+      if (overflow != null) {
+        overflow.advanceClock(currentTime);
+      }
+    }
+  }
+
+  protected static class Bucket implements Delayed {
+
+    private List<Timer> timers = new ArrayList<>();
+    private AtomicLong expiration = new AtomicLong(-1);
+
+    private synchronized void add(Timer timer) {
+      timers.add(timer);
+    }
+
+    // returns true if the expiration has changed which means the bucket needs to be queued again
+    private boolean setExpiration(long expiration) {
+      return (this.expiration.getAndSet(expiration) != expiration);
+    }
+
+    protected long getExpiration() {
+      return expiration.get();
+    }
+
+    protected synchronized List<Timer> flush() {
+      List<Timer> list = timers;
+      timers = new ArrayList<>();
+      expiration.set(-1);
+      return list;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(Math.max(getExpiration() - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed o) {
+      return Long.compare(getExpiration(), ((Bucket)o).getExpiration());
+    }
+
+  }
+
+}
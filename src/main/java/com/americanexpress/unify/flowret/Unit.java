@@ -22,6 +22,15 @@ abstract public class Unit {
   private String name = null;
   private UnitType type = null;
 
+  // only used for steps and routes
+  private RetryPolicy retryPolicy = null;
+
+  // the index of the unit in the compiled process definition
+  private int id = -1;
+
+  // the unit that follows this one for units which have a single next. Set when the process definition is compiled
+  private Unit nextUnit = null;
+
   protected Unit(String name, UnitType type) {
     this.name = name;
     this.type = type;
@@ -35,6 +44,35 @@ abstract public class Unit {
     return type;
   }
 
+  protected RetryPolicy getRetryPolicy() {
+    return retryPolicy;
+  }
+
+  protected void setRetryPolicy(RetryPolicy retryPolicy) {
+    this.retryPolicy = retryPolicy;
+  }
+
+  protected int getId() {
+    return id;
+  }
+
+  protected void setId(int id) {
+    this.id = id;
+  }
+
+  protected Unit getNextUnit() {
+    return nextUnit;
+  }
+
+  protected void setNextUnit(Unit nextUnit) {
+    this.nextUnit = nextUnit;
+  }
+
+  // the name of the unit that follows this one. Null for units which do not have a single next
+  protected String getNext() {
+    return null;
+  }
+
   abstract protected String getComponentName();
 
   abstract protected String getUserData();
@@ -23,6 +23,9 @@ public enum UnitType {
   S_ROUTE,
   P_ROUTE,
   P_ROUTE_DYNAMIC,
+  P_ROUTE_FOREACH,
   P_JOIN,
-  PERSIST
+  PERSIST,
+  STREAM,
+  CALL
 }
@@ -20,8 +20,12 @@ import org.apache.logging.log4j.Logger;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 /*
  * @author Deepak Arora
@@ -30,6 +34,15 @@ public class Utils {
 
   private static Logger logger = LogManager.getLogger(Utils.class);
 
+  // process info of a case being started which has nothing in the data store
+  protected static ProcessInfo getProcessInfo(String caseId, ProcessDefinition pd) {
+    ProcessInfo pi = new ProcessInfo(caseId, pd);
+    for (ProcessVariable pv : pd.getProcessVariables()) {
+      pi.setProcessVariable(pv);
+    }
+    return pi;
+  }
+
   protected static ProcessInfo getProcessInfo(FlowretDao dao, String caseId, ProcessDefinition pd) {
     ProcessInfo pi = new ProcessInfo(caseId, pd);
 
@@ -41,15 +54,26 @@ public class Utils {
       }
     }
     else {
+      pi.isPersisted = true;
+      Boolean isEphemeral = d.getBoolean("$.process_info.is_ephemeral");
+      pi.isEphemeral = (isEphemeral != null) && isEphemeral;
       sanitize(d, caseId, pd);
       getProcessVariablesFromProcessInfo(pi, d);
       getExecPaths(pi, d);
       getTicketInfo(pi, d);
+      getCompensations(pi, d);
 
       // set the pend info
       String s = d.getString("$.process_info.pend_exec_path");
       if (s != null) {
-        pi.getSetter().setPendExecPath(s);
+        pi.getSetter().setPendExecPath(pi.getSymbols().intern(s));
+      }
+
+      pi.setParentCaseId(d.getString("$.process_info.parent_case_id"));
+
+      // a budget given when the case was started
+      if (d.pathExists("$.process_info.budget")) {
+        pi.setBudget(getBudget(d, "$.process_info.budget"));
       }
     }
 
@@ -101,7 +125,7 @@ public class Utils {
         s = pid.getString("$.process_info.exec_paths[%].step", i + "");
         Unit unit = pd.getUnit(s);
 
-        if ((unit.getType() == UnitType.P_ROUTE) || (unit.getType() == UnitType.P_ROUTE_DYNAMIC)) {
+        if ((unit.getType() == UnitType.P_ROUTE) || (unit.getType() == UnitType.P_ROUTE_DYNAMIC) || (unit.getType() == UnitType.P_ROUTE_FOREACH)) {
           // TODO check and correct if required
           pid.setString("$.process_info.exec_paths[%].status", ExecPathStatus.COMPLETED.toString().toLowerCase(), i + "");
           logger.info("Case id -> {}, exec path -> {}, found parallel route with urt as ok_proceed, setting it to completed", caseId, epName);
@@ -151,13 +175,26 @@ public class Utils {
     }
   }
 
-  private static List<ProcessVariable> getProcessVariablesFromProcessInfo(Document d) {
-    int size = d.getArraySize("$.process_info.process_variables[]");
+  protected static List<ProcessVariable> getProcessVariablesFromProcessInfo(Document d) {
+    return getProcessVariables(d, "$.process_info.process_variables");
+  }
+
+  // read the process variables stored in the array at the given path
+  protected static List<ProcessVariable> getProcessVariables(Document d, String path) {
+    return getProcessVariables(d, path, null);
+  }
+
+  // as above with the names of the process variables replaced by their canonical instances if symbols is not null
+  private static List<ProcessVariable> getProcessVariables(Document d, String path, SymbolTable symbols) {
+    int size = d.getArraySize(path + "[]");
     List<ProcessVariable> list = new ArrayList<>(size);
     for (int i = 0; i < size; i++) {
-      String name = d.getString("$.process_info.process_variables[%].name", i + "");
-      String value = d.getString("$.process_info.process_variables[%].value", i + "");
-      String type = d.getString("$.process_info.process_variables[%].type", i + "");
+      String name = d.getString(path + "[%].name", i + "");
+      if (symbols != null) {
+        name = symbols.intern(name);
+      }
+      String value = d.getString(path + "[%].value", i + "");
+      String type = d.getString(path + "[%].type", i + "");
       ProcessVariableType pvt = ProcessVariableType.valueOf(type.toUpperCase());
       Object vo = getValueAsObject(pvt, value);
       ProcessVariable pv = new ProcessVariable(name, ProcessVariableType.valueOf(type.toUpperCase()), vo);
@@ -166,6 +203,16 @@ public class Utils {
     return list;
   }
 
+  // write the process variables to the array at the given path in the same format as process info
+  protected static void setProcessVariables(Document d, String path, List<ProcessVariable> list) {
+    for (int i = 0; i < list.size(); i++) {
+      ProcessVariable var = list.get(i);
+      d.setString(path + "[%].name", var.getName(), i + "");
+      d.setString(path + "[%].value", var.getValueAsString(), i + "");
+      d.setString(path + "[%].type", var.getType().toString().toLowerCase(), i + "");
+    }
+  }
+
   private static Object getValueAsObject(ProcessVariableType type, String value) {
     Object vo = null;
 
@@ -210,32 +257,23 @@ public class Utils {
   }
 
   private static void getProcessVariablesFromProcessInfo(ProcessInfo pi, Document d) {
-    List<ProcessVariable> list = getProcessVariablesFromProcessInfo(d);
+    List<ProcessVariable> list = getProcessVariables(d, "$.process_info.process_variables", pi.getSymbols());
     for (ProcessVariable pv : list) {
       pi.setProcessVariable(pv);
     }
-
-    int size = d.getArraySize("$.process_info.process_variables[]");
-    for (int i = 0; i < size; i++) {
-      String name = d.getString("$.process_info.process_variables[%].name", i + "");
-      String value = d.getString("$.process_info.process_variables[%].value", i + "");
-      String type = d.getString("$.process_info.process_variables[%].type", i + "");
-      ProcessVariableType pvt = ProcessVariableType.valueOf(type.toUpperCase());
-      Object vo = getValueAsObject(pvt, value);
-      ProcessVariable pv = new ProcessVariable(name, ProcessVariableType.valueOf(type.toUpperCase()), vo);
-      pi.setProcessVariable(pv);
-    }
   }
 
-  private static void getExecPaths(ProcessInfo pi, Document d) {
+  protected static void getExecPaths(ProcessInfo pi, Document d) {
+    SymbolTable symbols = pi.getSymbols();
     int size = d.getArraySize("$.process_info.exec_paths[]");
     for (int i = 0; i < size; i++) {
-      String name = d.getString("$.process_info.exec_paths[%].name", i + "");
+      String name = symbols.intern(d.getString("$.process_info.exec_paths[%].name", i + ""));
       String status = d.getString("$.process_info.exec_paths[%].status", i + "");
-      String step = d.getString("$.process_info.exec_paths[%].step", i + "");
-      String pendWorkBasket = d.getString("$.process_info.exec_paths[%].pend_workbasket", i + "");
-      String prevPendWorkBasket = d.getString("$.process_info.exec_paths[%].prev_pend_workbasket", i + "");
-      String tbcSlaWorkBasket = d.getString("$.process_info.exec_paths[%].tbc_sla_workbasket", i + "");
+      String step = symbols.intern(d.getString("$.process_info.exec_paths[%].step", i + ""));
+      String pendWorkBasket = symbols.intern(d.getString("$.process_info.exec_paths[%].pend_workbasket", i + ""));
+      String prevPendWorkBasket = symbols.intern(d.getString("$.process_info.exec_paths[%].prev_pend_workbasket", i + ""));
+      String tbcSlaWorkBasket = symbols.intern(d.getString("$.process_info.exec_paths[%].tbc_sla_workbasket", i + ""));
+      int size1 = 0;
 
       ErrorTuple et = new ErrorTuple();
       String errorCode = d.getString("$.process_info.exec_paths[%].error.code", i + "");
@@ -261,23 +299,70 @@ public class Utils {
       ep.setPendErrorTuple(et);
       ep.setPrevPendWorkBasket(prevPendWorkBasket);
       ep.setTbcSlaWorkBasket(tbcSlaWorkBasket);
+
+      String timerId = d.getString("$.process_info.exec_paths[%].timer_id", i + "");
+      if (timerId != null) {
+        ep.setTimerId(timerId);
+      }
+
+      // items and results of for each parallel route branches
+      size1 = d.getArraySize("$.process_info.exec_paths[%].items[]", i + "");
+      for (int j = 0; j < size1; j++) {
+        ep.getItems().add(d.getArrayValueString("$.process_info.exec_paths[%].items[%]", i + "", j + ""));
+      }
+      size1 = d.getArraySize("$.process_info.exec_paths[%].results[]", i + "");
+      for (int j = 0; j < size1; j++) {
+        ep.addResult(d.getArrayValueString("$.process_info.exec_paths[%].results[%]", i + "", j + ""));
+      }
+
       pi.setExecPath(ep);
     }
   }
 
   private static void getTicketInfo(ProcessInfo pi, Document d) {
-    String ticket = d.getString("$.process_info.ticket");
+    String ticket = pi.getSymbols().intern(d.getString("$.process_info.ticket"));
     if (ticket == null) {
       ticket = "";
     }
     pi.getSetter().setTicket(ticket);
   }
 
+  protected static void getCompensations(ProcessInfo pi, Document d) {
+    SymbolTable symbols = pi.getSymbols();
+    int size = d.getArraySize("$.process_info.compensations[]");
+    for (int i = 0; i < size; i++) {
+      String stepName = symbols.intern(d.getString("$.process_info.compensations[%].step", i + ""));
+      String execPathName = symbols.intern(d.getString("$.process_info.compensations[%].exec_path", i + ""));
+      String componentName = symbols.intern(d.getString("$.process_info.compensations[%].component", i + ""));
+      String status = d.getString("$.process_info.compensations[%].status", i + "");
+      Compensation c = new Compensation(stepName, execPathName, componentName);
+      c.setStatus(CompensationStatus.valueOf(status.toUpperCase()));
+      pi.addCompensation(c);
+    }
+  }
+
   protected static ProcessDefinition getProcessDefinition(Document d) {
     ProcessDefinition pd = new ProcessDefinition();
 
     pd.setName(d.getString("$.journey.name"));
 
+    // dataflow mode
+    Boolean isDataflow = d.getBoolean("$.journey.dataflow");
+    if (isDataflow != null) {
+      pd.setDataflow(isDataflow);
+    }
+
+    // ephemeral mode
+    Boolean isEphemeral = d.getBoolean("$.journey.ephemeral");
+    if (isEphemeral != null) {
+      pd.setEphemeral(isEphemeral);
+    }
+
+    // budget
+    if (d.pathExists("$.journey.budget")) {
+      pd.setBudget(getBudget(d, "$.journey.budget"));
+    }
+
     // process variables
     if (d.pathExists("$.journey.process_variables[]")) {
       List<ProcessVariable> list = getProcessVariablesFromProcessDefinition(d);
@@ -290,7 +375,10 @@ public class Utils {
       for (int i = 0; i < size; i++) {
         String name = d.getString("$.journey.tickets[%].name", i + "");
         String stepName = d.getString("$.journey.tickets[%].step", i + "");
-        Ticket t = new Ticket(name, stepName);
+        String action = d.getString("$.journey.tickets[%].action", i + "");
+        Integer maxConcurrency = d.getInteger("$.journey.tickets[%].max_concurrency", i + "");
+        maxConcurrency = ((maxConcurrency == null) || (maxConcurrency < 1)) ? 1 : maxConcurrency;
+        Ticket t = new Ticket(name, stepName, "compensate".equalsIgnoreCase(action), maxConcurrency);
         pd.setTicket(t);
       }
     }
@@ -328,6 +416,10 @@ public class Utils {
             unit = getRoute(d, si, UnitType.P_ROUTE_DYNAMIC);
             break;
 
+          case P_ROUTE_FOREACH:
+            unit = getRoute(d, si, UnitType.P_ROUTE_FOREACH);
+            break;
+
           case PAUSE:
             unit = getPause(d, si);
             break;
@@ -336,30 +428,278 @@ public class Utils {
             unit = getPersist(d, si);
             break;
 
+          case STREAM:
+            unit = getStream(d, si);
+            break;
+
+          case CALL:
+            unit = getCall(d, si);
+            break;
+
           case P_JOIN:
             unit = getJoin(d, si);
             break;
         }
 
+        unit.setRetryPolicy(getRetryPolicy(d, si));
         pd.addUnit(unit);
       }
     }
 
+    pd.compile();
+    pd.setPlan(DefinitionAnalyzer.analyze(pd));
+
+    if (pd.isDataflow()) {
+      setDataflowGroups(pd);
+    }
+
     return pd;
   }
 
+  private static void setDataflowGroups(ProcessDefinition pd) {
+    // for each step, find the run of consecutive steps starting from it which do not read or write
+    // the process variables written by any earlier step of the run and which do not write what an
+    // earlier step reads. A run stops at the first unit which is not a step or has not declared
+    // its reads and writes in which case we fall back to sequential execution. As every step after
+    // the first is started before the steps ahead of it are known not to pend or raise a ticket, a
+    // run also stops at the first step which has not been declared idempotent
+    for (Unit unit : pd.getUnits()) {
+      if (unit.getType() != UnitType.STEP) {
+        continue;
+      }
+
+      Step step = (Step)unit;
+      if (step.isDataflowDeclared() == false) {
+        continue;
+      }
+
+      List<Step> group = new ArrayList<>();
+      Set<String> reads = new HashSet<>(step.getReads());
+      Set<String> writes = new HashSet<>(step.getWrites());
+      group.add(step);
+
+      Unit u = pd.getUnit(step.getNext());
+      while ((u != null) && (u.getType() == UnitType.STEP)) {
+        Step next = (Step)u;
+        if ((next.isDataflowDeclared() == false) || (next.isIdempotent() == false) || group.contains(next)) {
+          break;
+        }
+        if (isIntersecting(next.getWrites(), reads) || isIntersecting(next.getWrites(), writes) || isIntersecting(next.getReads(), writes)) {
+          break;
+        }
+        group.add(next);
+        reads.addAll(next.getReads());
+        writes.addAll(next.getWrites());
+        u = pd.getUnit(next.getNext());
+      }
+
+      if (group.size() > 1) {
+        pd.setDataflowGroup(step.getName(), group);
+      }
+    }
+  }
+
+  // returns the join at which the branches of the given parallel route meet or null if one cannot be found
+  // walks the compiled graph of the definition from the route to the join at which its branches meet
+  protected static Join getJoin(ProcessDefinition pd, Route route) {
+    return getJoin(route, new boolean[pd.getUnitCount()]);
+  }
+
+  private static Join getJoin(Route route, boolean[] visited) {
+    if (route.getNext() != null) {
+      return findJoin(route.getNextUnit(), visited);
+    }
+
+    for (Branch branch : route.getBranches()) {
+      Join join = findJoin(branch.getNextUnit(), visited);
+      if (join != null) {
+        return join;
+      }
+    }
+    return null;
+  }
+
+  private static Join findJoin(Unit unit, boolean[] visited) {
+    while ((unit != null) && (unit != ProcessDefinition.END) && (visited[unit.getId()] == false)) {
+      visited[unit.getId()] = true;
+      switch (unit.getType()) {
+        case P_JOIN:
+          return (Join)unit;
+
+        case STEP:
+        case STREAM:
+        case CALL:
+        case PAUSE:
+        case PERSIST:
+          unit = unit.getNextUnit();
+          break;
+
+        case S_ROUTE:
+          return getJoin((Route)unit, visited);
+
+        case P_ROUTE:
+        case P_ROUTE_DYNAMIC:
+        case P_ROUTE_FOREACH: {
+          // skip over the nested parallel section
+          Join join = getJoin((Route)unit, visited);
+          unit = (join == null) ? null : join.getNextUnit();
+          break;
+        }
+
+        default:
+          unit = null;
+          break;
+      }
+    }
+
+    return null;
+  }
+
+  private static boolean isIntersecting(Set<String> set1, Set<String> set2) {
+    for (String s : set1) {
+      if (set2.contains(s)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Set<String> getStringSet(Document d, String path, String si) {
+    if (d.pathExists(path + "[]", si) == false) {
+      return null;
+    }
+
+    Set<String> set = new HashSet<>();
+    int size = d.getArraySize(path + "[]", si);
+    for (int i = 0; i < size; i++) {
+      set.add(d.getArrayValueString(path + "[%]", si, i + ""));
+    }
+    return set;
+  }
+
+  // run the task on the current thread if no other thread has picked it up yet else wait for it to complete
+  protected static <T> T runOrAwait(FutureTask<T> task, String caseId) {
+    task.run();
+    try {
+      return task.get();
+    }
+    catch (InterruptedException | ExecutionException e) {
+      // should never happen
+      throw new UnifyException("flowret_err_5", e, caseId);
+    }
+  }
+
+  // reads a budget from the journey or from the process info
+  protected static Budget getBudget(Document d, String path) {
+    Long maxRunMs = d.getLong(path + ".max_run_ms");
+    Integer maxUnits = d.getInteger(path + ".max_units");
+    Integer maxBranches = d.getInteger(path + ".max_branches");
+    String workBasket = d.getString(path + ".work_basket");
+
+    maxRunMs = (maxRunMs == null) ? 0 : maxRunMs;
+    maxUnits = (maxUnits == null) ? 0 : maxUnits;
+    maxBranches = (maxBranches == null) ? 0 : maxBranches;
+
+    return new Budget(maxRunMs, maxUnits, maxBranches, workBasket);
+  }
+
+  private static RetryPolicy getRetryPolicy(Document d, String si) {
+    Integer maxAttempts = d.getInteger("$.journey.flow[%].retry.max_attempts", si);
+    if ((maxAttempts == null) || (maxAttempts <= 1)) {
+      return null;
+    }
+
+    Long backoffMs = d.getLong("$.journey.flow[%].retry.backoff_ms", si);
+    Long maxBackoffMs = d.getLong("$.journey.flow[%].retry.max_backoff_ms", si);
+    Integer multiplier = d.getInteger("$.journey.flow[%].retry.multiplier", si);
+    Boolean jitter = d.getBoolean("$.journey.flow[%].retry.jitter", si);
+
+    backoffMs = (backoffMs == null) ? 1000 : backoffMs;
+    maxBackoffMs = (maxBackoffMs == null) ? Math.max(backoffMs, 60000) : Math.max(backoffMs, maxBackoffMs);
+    multiplier = ((multiplier == null) || (multiplier < 1)) ? 2 : multiplier;
+    jitter = (jitter == null) ? true : jitter;
+
+    return new RetryPolicy(maxAttempts, backoffMs, maxBackoffMs, multiplier, jitter);
+  }
+
   private static Unit getStep(Document d, String si) {
     String name = d.getString("$.journey.flow[%].name", si);
     String component = d.getString("$.journey.flow[%].component", si);
     String next = d.getString("$.journey.flow[%].next", si);
     String userData = d.getString("$.journey.flow[%].user_data", si);
-    return new Step(name, component, next, userData);
+    Set<String> reads = getStringSet(d, "$.journey.flow[%].reads", si);
+    Set<String> writes = getStringSet(d, "$.journey.flow[%].writes", si);
+    Step step = new Step(name, component, next, userData, reads, writes);
+    step.setCompensateName(d.getString("$.journey.flow[%].compensate", si));
+    Boolean isIdempotent = d.getBoolean("$.journey.flow[%].idempotent", si);
+    step.setIdempotent((isIdempotent == null) ? false : isIdempotent);
+    return step;
+  }
+
+  private static Unit getStream(Document d, String si) {
+    String name = d.getString("$.journey.flow[%].name", si);
+    String component = d.getString("$.journey.flow[%].component", si);
+    String consumer = d.getString("$.journey.flow[%].consumer", si);
+    String next = d.getString("$.journey.flow[%].next", si);
+    String userData = d.getString("$.journey.flow[%].user_data", si);
+    Integer consumers = d.getInteger("$.journey.flow[%].consumers", si);
+    Integer capacity = d.getInteger("$.journey.flow[%].capacity", si);
+    return new Stream(name, component, consumer, next, userData, ((consumers == null) || (consumers < 1)) ? 1 : consumers, ((capacity == null) || (capacity < 1)) ? 100 : capacity);
+  }
+
+  private static Unit getCall(Document d, String si) {
+    String name = d.getString("$.journey.flow[%].name", si);
+    String component = d.getString("$.journey.flow[%].component", si);
+    String next = d.getString("$.journey.flow[%].next", si);
+    String userData = d.getString("$.journey.flow[%].user_data", si);
+    Integer maxConcurrency = d.getInteger("$.journey.flow[%].max_concurrency", si);
+    return new Call(name, component, next, userData, ((maxConcurrency == null) || (maxConcurrency < 1)) ? 1 : maxConcurrency);
   }
 
   private static Unit getPause(Document d, String si) {
     String name = d.getString("$.journey.flow[%].name", si);
     String next = d.getString("$.journey.flow[%].next", si);
-    return new Pause(name, next);
+    String wait = d.getString("$.journey.flow[%].wait", si);
+    String wakeAtVar = d.getString("$.journey.flow[%].wake_at_var", si);
+    return new Pause(name, next, (wait == null) ? -1 : getDuration(wait), wakeAtVar);
+  }
+
+  // converts a duration like 500ms, 30s, 5m, 2h or 1d to milliseconds
+  protected static long getDuration(String s) {
+    s = s.trim().toLowerCase();
+    long unit = 0;
+    String value = null;
+    if (s.endsWith("ms")) {
+      unit = 1;
+      value = s.substring(0, s.length() - 2);
+    }
+    else if (s.isEmpty() == false) {
+      value = s.substring(0, s.length() - 1);
+      switch (s.charAt(s.length() - 1)) {
+        case 's':
+          unit = 1000;
+          break;
+        case 'm':
+          unit = 60000;
+          break;
+        case 'h':
+          unit = 3600000;
+          break;
+        case 'd':
+          unit = 86400000;
+          break;
+      }
+    }
+
+    try {
+      if (unit == 0) {
+        throw new NumberFormatException();
+      }
+      return Long.parseLong(value.trim()) * unit;
+    }
+    catch (NumberFormatException e) {
+      throw new UnifyException("flowret_err_13", s);
+    }
   }
 
   private static Unit getPersist(Document d, String si) {
@@ -389,6 +729,10 @@ public class Utils {
       throw new UnifyException("flowret_err_10");
     }
 
+    if ((type == UnitType.P_ROUTE_FOREACH) && (hasBranches == true)) {
+      throw new UnifyException("flowret_err_12");
+    }
+
     Route route = null;
     if (next != null) {
       route = new Route(name, component, userData, next, type);
@@ -405,25 +749,34 @@ public class Utils {
       route = new Route(name, component, userData, branches, type);
     }
 
-    return route;
-  }
+    String expression = d.getString("$.journey.flow[%].expression", si);
+    if (expression != null) {
+      if ((type != UnitType.S_ROUTE) && (type != UnitType.P_ROUTE_DYNAMIC)) {
+        throw new UnifyException("flowret_err_19", expression, "an expression can only be used by a singular or dynamic parallel route");
+      }
+      route.setExpression(Expression.compile(expression));
+    }
 
-  protected static void enqueueCaseStartMilestones(ProcessContext pc, Document slad, ISlaQueueManager slaQm) {
-    Document d = slad;
-    Document md = new JDocument();
-    int j = 0;
-    int size = d.getArraySize("$.milestones[]");
+    if ((type == UnitType.P_ROUTE_DYNAMIC) || (type == UnitType.P_ROUTE_FOREACH)) {
+      Integer maxParallelism = d.getInteger("$.journey.flow[%].max_parallelism", si);
+      if ((maxParallelism != null) && (maxParallelism > 0)) {
+        route.setMaxParallelism(maxParallelism);
+      }
+    }
 
-    for (int i = 0; i < size; i++) {
-      String s = d.getString("$.milestones[%].setup_on", i + "");
-      if (s.equals(SlaMilestoneSetupOn.case_start.toString())) {
-        md.setContent(d, "$.milestones[%]", "$.milestones[%]", i + "", j + "");
-        j++;
+    if (type == UnitType.P_ROUTE_FOREACH) {
+      Integer chunkSize = d.getInteger("$.journey.flow[%].chunk_size", si);
+      if ((chunkSize != null) && (chunkSize > 0)) {
+        route.setChunkSize(chunkSize);
       }
     }
 
-    size = md.getArraySize("$.milestones[]");
-    if (size > 0) {
+    return route;
+  }
+
+  protected static void enqueueCaseStartMilestones(ProcessContext pc, SlaMilestones milestones, ISlaQueueManager slaQm) {
+    Document md = milestones.getCaseStartMilestones();
+    if (md != null) {
       logger.info("Case id -> {}, raising sla milestones enqueue event on case start for milestones -> {}", pc.getCaseId(), md.getPrettyPrintJson());
       slaQm.enqueue(pc, md);
     }
@@ -438,24 +791,9 @@ public class Utils {
     slaQm.dequeue(pc, wb);
   }
 
-  protected static void enqueueWorkBasketMilestones(ProcessContext pc, SlaMilestoneSetupOn setupOn, String wb, Document slad, ISlaQueueManager slaQm) {
-    Document d = slad;
-    Document md = new JDocument();
-    int j = 0;
-    int size = d.getArraySize("$.milestones[]");
-
-    for (int i = 0; i < size; i++) {
-      String s = d.getString("$.milestones[%].setup_on", i + "");
-      if (s.equals(setupOn.toString())) {
-        if (d.getString("$.milestones[%].work_basket_name", i + "").equals(wb)) {
-          md.setContent(d, "$.milestones[%]", "$.milestones[%]", i + "", j + "");
-          j++;
-        }
-      }
-    }
-
-    size = md.getArraySize("$.milestones[]");
-    if (size > 0) {
+  protected static void enqueueWorkBasketMilestones(ProcessContext pc, SlaMilestoneSetupOn setupOn, String wb, SlaMilestones milestones, ISlaQueueManager slaQm) {
+    Document md = milestones.getWorkBasketMilestones(setupOn, wb);
+    if (md != null) {
       logger.info("Case id -> {}, raising sla milestones enqueue event on -> {} of work basket -> {} for milestones -> {}", pc.getCaseId(), setupOn.toString(), wb, md.getPrettyPrintJson());
       slaQm.enqueue(pc, md);
     }
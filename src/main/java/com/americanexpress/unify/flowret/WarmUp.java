@@ -0,0 +1,186 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+import com.americanexpress.unify.jdocs.Document;
+import com.americanexpress.unify.jdocs.JDocument;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * @author Deepak Arora
+ */
+
+// Warms up Flowret before it takes traffic. The journeys are parsed and compiled in parallel into the definition
+// cache, the threads of the pool are started and synthetic cases are run through the journeys so that the classes
+// are loaded and the JIT compiler has seen the code paths which real cases will take. Synthetic cases are run
+// against an in memory data store with components which do nothing and so no application code is called. Their
+// timers, correlations and dispatched branches are kept away from the services which use the application data store
+class WarmUp {
+
+  private static Logger logger = LogManager.getLogger(WarmUp.class);
+
+  private WarmUp() {
+  }
+
+  protected static WarmUpReport run(ExecutorService es, DefinitionCache cache, Collection<String> journeys, int casesPerJourney) {
+    long start = System.currentTimeMillis();
+
+    int threadsStarted = ((ThreadPoolExecutor)es).prestartAllCoreThreads();
+
+    // we wait on the tasks from this thread and so a task which is rejected by the pool is run here
+    List<FutureTask<ProcessDefinition>> tasks = new ArrayList<>(journeys.size());
+    for (String json : journeys) {
+      FutureTask<ProcessDefinition> task = new FutureTask<>(() -> cache.getProcessDefinition(new JDocument(json)));
+      tasks.add(task);
+      es.execute(task);
+    }
+    List<ProcessDefinition> pds = new ArrayList<>(tasks.size());
+    for (FutureTask<ProcessDefinition> task : tasks) {
+      pds.add(Utils.runOrAwait(task, "flowret_warm_up"));
+    }
+    long compileMs = System.currentTimeMillis() - start;
+
+    // synthetic cases are run one after the other from this thread. A case waits on the pool threads running its
+    // branches and so running cases on the pool itself could use up all its threads
+    int casesRun = 0;
+    int casesFailed = 0;
+    MemoryDao dao = new MemoryDao();
+    EventHandler handler = (event, pc) -> {
+    };
+    int i = 0;
+    for (String json : journeys) {
+      ProcessDefinition pd = pds.get(i);
+      Rts rts = new Rts(dao, pc -> new NoOpComponent(pd, pc), handler, null);
+      rts.isWarmUp = true;
+
+      // a singular route always takes its first branch and so a case of a journey which loops back through one would
+      // never end. The budget pends such a case once it has been through each unit about twice
+      Budget budget = new Budget(0, pd.getUnitCount() * 2, 0, "flowret_warm_up");
+      for (int j = 0; j < casesPerJourney; j++) {
+        String caseId = "flowret_warm_up_" + (i + 1) + "_" + (j + 1);
+        try {
+          rts.startCase(caseId, json, null, null, budget);
+        }
+        catch (Exception e) {
+          casesFailed++;
+          logger.error("Case id -> " + caseId + ", error running warm up case of journey -> " + pd.getName() + ", error -> " + e.getMessage());
+        }
+        casesRun++;
+      }
+      dao.clear();
+      i++;
+    }
+
+    WarmUpReport report = new WarmUpReport(pds.size(), compileMs, casesRun, casesFailed, threadsStarted, System.currentTimeMillis() - start);
+    logger.info("Flowret warmed up, " + report);
+    return report;
+  }
+
+  // a component which lets a synthetic case move through every unit of a journey. Singular routes take the first
+  // branch, parallel routes take all the branches and dynamic and for each routes a single branch
+  private static class NoOpComponent implements InvokableStep, InvokableRoute, InvokableProducer, InvokableConsumer, InvokableCall {
+
+    private final ProcessDefinition pd;
+    private final ProcessContext pc;
+
+    private NoOpComponent(ProcessDefinition pd, ProcessContext pc) {
+      this.pd = pd;
+      this.pc = pc;
+    }
+
+    @Override
+    public StepResponse executeStep() {
+      return new StepResponse(UnitResponseType.OK_PROCEED, null, null);
+    }
+
+    @Override
+    public RouteResponse executeRoute() {
+      List<String> branches = new ArrayList<>();
+      switch (pc.getCompType()) {
+        case S_ROUTE:
+        case P_ROUTE:
+          for (Branch branch : ((Route)pd.getUnit(pc.getStepName())).getBranches()) {
+            branches.add(branch.getName());
+            if (pc.getCompType() == UnitType.S_ROUTE) {
+              break;
+            }
+          }
+          break;
+
+        default:
+          branches.add("1");
+          break;
+      }
+      return new RouteResponse(UnitResponseType.OK_PROCEED, branches, null);
+    }
+
+    @Override
+    public StepResponse produce(StreamChannel channel) {
+      return new StepResponse(UnitResponseType.OK_PROCEED, null, null);
+    }
+
+    @Override
+    public StepResponse consume(String item) {
+      return new StepResponse(UnitResponseType.OK_PROCEED, null, null);
+    }
+
+    @Override
+    public List<ChildCase> executeCall() {
+      return new ArrayList<>();
+    }
+
+  }
+
+  // the data store of the synthetic cases. It is cleared after the cases of each journey have been run
+  private static class MemoryDao implements FlowretDao {
+
+    private final Map<String, String> docs = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    @Override
+    public void write(String key, Document d) {
+      docs.put(key, d.getJson());
+    }
+
+    @Override
+    public Document read(String key) {
+      String json = docs.get(key);
+      return (json == null) ? null : new JDocument(json);
+    }
+
+    @Override
+    public long incrCounter(String key) {
+      return counters.computeIfAbsent(key, k -> new AtomicLong(-1)).incrementAndGet();
+    }
+
+    private void clear() {
+      docs.clear();
+      counters.clear();
+    }
+
+  }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+/*
+ * @author Deepak Arora
+ */
+
+// The result of warming up Flowret. It tells how long each part of the warm up took so that an application can
+// decide when it is ready to take traffic
+public class WarmUpReport {
+
+  private final int journeysCompiled;
+  private final long compileMs;
+  private final int casesRun;
+  private final int casesFailed;
+  private final int threadsStarted;
+  private final long totalMs;
+
+  protected WarmUpReport(int journeysCompiled, long compileMs, int casesRun, int casesFailed, int threadsStarted, long totalMs) {
+    this.journeysCompiled = journeysCompiled;
+    this.compileMs = compileMs;
+    this.casesRun = casesRun;
+    this.casesFailed = casesFailed;
+    this.threadsStarted = threadsStarted;
+    this.totalMs = totalMs;
+  }
+
+  /**
+   * @return the number of journeys parsed, compiled and placed in the definition cache
+   */
+  public int getJourneysCompiled() {
+    return journeysCompiled;
+  }
+
+  /**
+   * @return the time in milliseconds taken to compile the journeys
+   */
+  public long getCompileMs() {
+    return compileMs;
+  }
+
+  /**
+   * @return the number of synthetic cases run
+   */
+  public int getCasesRun() {
+    return casesRun;
+  }
+
+  /**
+   * @return the number of synthetic cases which could not be run
+   */
+  public int getCasesFailed() {
+    return casesFailed;
+  }
+
+  /**
+   * @return the number of threads of the pool started by the warm up
+   */
+  public int getThreadsStarted() {
+    return threadsStarted;
+  }
+
+  /**
+   * @return the time in milliseconds taken by the whole warm up
+   */
+  public long getTotalMs() {
+    return totalMs;
+  }
+
+  @Override
+  public String toString() {
+    return "journeys compiled -> " + journeysCompiled + ", compile ms -> " + compileMs + ", cases run -> " + casesRun + ", cases failed -> " + casesFailed + ", threads started -> " + threadsStarted + ", total ms -> " + totalMs;
+  }
+
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * @author Deepak Arora
+ */
+
+// Tracks the units being run and the parallel routes waiting on their branches. At every check, units running for
+// longer than the threshold are reported along with their stack trace and so is the case where every thread used for
+// parallel processing is blocked waiting on branches which are queued and can therefore never run
+public class Watchdog {
+
+  private static Logger logger = LogManager.getLogger(Watchdog.class);
+
+  private WatchdogListener listener = null;
+  private long slowUnitMs = 0;
+  private long checkIntervalMs = 0;
+  private Set<Activity> activities = ConcurrentHashMap.newKeySet();
+  private Thread checker = null;
+  private volatile boolean isRunning = false;
+  private boolean isStarved = false;
+
+  // metrics
+  private AtomicLong slowUnits = new AtomicLong();
+  private AtomicLong starvations = new AtomicLong();
+  private volatile int blockedThreads = 0;
+
+  // a unit being run or a parallel route waiting on its branches
+  protected static class Activity {
+    private Watchdog watchdog = null;
+    protected String caseId = null;
+    protected String execPathName = null;
+    protected String unitName = null;
+    protected String componentName = null;
+    protected Thread thread = Thread.currentThread();
+    protected long startedAt = System.currentTimeMillis();
+    private boolean isWait = false;
+    private boolean isPoolThread = Flowret.isPoolThread();
+    private boolean isReported = false;
+
+    private Activity(Watchdog watchdog, String caseId, String execPathName, Unit unit, boolean isWait) {
+      this.watchdog = watchdog;
+      this.caseId = caseId;
+      this.execPathName = execPathName;
+      this.unitName = unit.getName();
+      this.componentName = unit.getComponentName();
+      this.isWait = isWait;
+    }
+  }
+
+  protected Watchdog(WatchdogListener listener, long slowUnitMs, long checkIntervalMs) {
+    this.listener = listener;
+    this.slowUnitMs = slowUnitMs;
+    this.checkIntervalMs = checkIntervalMs;
+  }
+
+  // called before a unit is run. Returns null if the watchdog is not running
+  protected static Activity enter(String caseId, String execPathName, Unit unit) {
+    return enter(caseId, execPathName, unit, false);
+  }
+
+  // called before a parallel route starts waiting on its branches
+  protected static Activity enterWait(String caseId, String execPathName, Route route) {
+    return enter(caseId, execPathName, route, true);
+  }
+
+  private static Activity enter(String caseId, String execPathName, Unit unit, boolean isWait) {
+    Watchdog watchdog = Flowret.instance().getWatchdog();
+    if (watchdog == null) {
+      return null;
+    }
+    Activity activity = new Activity(watchdog, caseId, execPathName, unit, isWait);
+    watchdog.activities.add(activity);
+    return activity;
+  }
+
+  protected static void exit(Activity activity) {
+    if (activity != null) {
+      activity.watchdog.activities.remove(activity);
+    }
+  }
+
+  /**
+   * Method that starts the watchdog
+   */
+  public synchronized void start() {
+    if (isRunning == true) {
+      return;
+    }
+
+    isRunning = true;
+    checker = new Thread(() -> watch(), "flowret-watchdog");
+    checker.setDaemon(true);
+    checker.start();
+  }
+
+  /**
+   * Method that stops the watchdog
+   */
+  public synchronized void stop() {
+    if (isRunning == false) {
+      return;
+    }
+
+    isRunning = false;
+    checker.interrupt();
+    try {
+      checker.join();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void watch() {
+    while (isRunning == true) {
+      try {
+        Thread.sleep(checkIntervalMs);
+      }
+      catch (InterruptedException e) {
+        break;
+      }
+
+      try {
+        check();
+      }
+      catch (Exception e) {
+        logger.error("Error in watchdog check, error message -> " + e.getMessage());
+      }
+    }
+  }
+
+  protected void check() {
+    long now = System.currentTimeMillis();
+    // a thread waiting on the branches of a route which itself waits on the branches of an inner route is only
+    // blocked once and so waits are counted by thread keeping the oldest wait of each thread
+    Map<Thread, Activity> waits = new HashMap<>();
+
+    for (Activity activity : activities) {
+      if (activity.isWait == true) {
+        if (activity.isPoolThread == true) {
+          waits.merge(activity.thread, activity, (a, b) -> (b.startedAt < a.startedAt) ? b : a);
+        }
+        continue;
+      }
+
+      if ((activity.isReported == false) && ((now - activity.startedAt) >= slowUnitMs)) {
+        activity.isReported = true;
+        slowUnits.incrementAndGet();
+        report(new WatchdogFinding(WatchdogFindingType.SLOW_UNIT, activity, now - activity.startedAt, activity.thread.getStackTrace()));
+      }
+    }
+
+    blockedThreads = waits.size();
+    ThreadPoolExecutor es = (ThreadPoolExecutor)Flowret.instance().getExecutorService();
+    if (es == null) {
+      return;
+    }
+
+    int poolSize = es.getMaximumPoolSize();
+    int queuedTasks = es.getQueue().size();
+    boolean isStarved = (waits.size() >= poolSize) && (queuedTasks > 0);
+    if ((isStarved == true) && (this.isStarved == false)) {
+      Activity oldest = null;
+      for (Activity activity : waits.values()) {
+        if ((oldest == null) || (activity.startedAt < oldest.startedAt)) {
+          oldest = activity;
+        }
+      }
+      starvations.incrementAndGet();
+      WatchdogFinding finding = new WatchdogFinding(WatchdogFindingType.POOL_STARVATION, oldest, now - oldest.startedAt, oldest.thread.getStackTrace());
+      finding.setPoolState(poolSize, waits.size(), queuedTasks);
+      report(finding);
+    }
+    this.isStarved = isStarved;
+  }
+
+  private void report(WatchdogFinding finding) {
+    logger.warn("Watchdog finding -> " + finding);
+    if (listener != null) {
+      try {
+        listener.onFinding(finding);
+      }
+      catch (Exception e) {
+        logger.error("Error in watchdog listener, error message -> " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * @return the number of slow units reported since the watchdog was started
+   */
+  public long getSlowUnits() {
+    return slowUnits.get();
+  }
+
+  /**
+   * @return the number of times pool starvation was reported since the watchdog was started
+   */
+  public long getStarvations() {
+    return starvations.get();
+  }
+
+  /**
+   * @return the number of units being run at present
+   */
+  public int getRunningUnits() {
+    int count = 0;
+    for (Activity activity : activities) {
+      if (activity.isWait == false) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @return the number of threads used for parallel processing that were blocked waiting on branches at the last check
+   */
+  public int getBlockedThreads() {
+    return blockedThreads;
+  }
+
+}
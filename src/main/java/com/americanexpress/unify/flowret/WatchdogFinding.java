@@ -0,0 +1,109 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+/*
+ * @author Deepak Arora
+ */
+public class WatchdogFinding {
+
+  private WatchdogFindingType type = null;
+
+  // the case, execution path and unit of the slow unit or, for pool starvation, of the parallel route which has been
+  // waiting the longest on its branches
+  private String caseId = null;
+  private String execPathName = null;
+  private String unitName = null;
+  private String componentName = null;
+  private String threadName = null;
+  private long runningMs = 0;
+  private StackTraceElement[] stackTrace = null;
+
+  // the state of the thread pool used for parallel processing at the time of the finding
+  private int poolSize = 0;
+  private int blockedThreads = 0;
+  private int queuedTasks = 0;
+
+  protected WatchdogFinding(WatchdogFindingType type, Watchdog.Activity activity, long runningMs, StackTraceElement[] stackTrace) {
+    this.type = type;
+    this.caseId = activity.caseId;
+    this.execPathName = activity.execPathName;
+    this.unitName = activity.unitName;
+    this.componentName = activity.componentName;
+    this.threadName = activity.thread.getName();
+    this.runningMs = runningMs;
+    this.stackTrace = stackTrace;
+  }
+
+  protected void setPoolState(int poolSize, int blockedThreads, int queuedTasks) {
+    this.poolSize = poolSize;
+    this.blockedThreads = blockedThreads;
+    this.queuedTasks = queuedTasks;
+  }
+
+  public WatchdogFindingType getType() {
+    return type;
+  }
+
+  public String getCaseId() {
+    return caseId;
+  }
+
+  public String getExecPathName() {
+    return execPathName;
+  }
+
+  public String getUnitName() {
+    return unitName;
+  }
+
+  public String getComponentName() {
+    return componentName;
+  }
+
+  public String getThreadName() {
+    return threadName;
+  }
+
+  public long getRunningMs() {
+    return runningMs;
+  }
+
+  public StackTraceElement[] getStackTrace() {
+    return stackTrace;
+  }
+
+  public int getPoolSize() {
+    return poolSize;
+  }
+
+  public int getBlockedThreads() {
+    return blockedThreads;
+  }
+
+  public int getQueuedTasks() {
+    return queuedTasks;
+  }
+
+  @Override
+  public String toString() {
+    String s = type + ", case id -> " + caseId + ", unit -> " + unitName + ", component -> " + componentName + ", execution path -> " + execPathName + ", thread -> " + threadName + ", running ms -> " + runningMs;
+    if (type == WatchdogFindingType.POOL_STARVATION) {
+      s = s + ", pool size -> " + poolSize + ", blocked threads -> " + blockedThreads + ", queued tasks -> " + queuedTasks;
+    }
+    return s;
+  }
+
+}
@@ -32,7 +32,7 @@ public final class Wms {
   protected ISlaQueueManager slaQm = null;
   protected ProcessInfo pi = null;
   protected ProcessDefinition pd = null;
-  protected Document slad = null;
+  protected SlaMilestones slaMilestones = null;
 
   protected Wms(FlowretDao dao, WorkManager wm, ISlaQueueManager slaQm) {
     this.dao = dao;
@@ -41,6 +41,17 @@ public final class Wms {
   }
 
   public void changeWorkBasket(String caseId, String newWb) {
+    // the lease is held so that the case is not run while we update its process info
+    Lease lease = Lease.acquire(dao, caseId);
+    try {
+      changeWorkBasket(caseId, newWb, lease);
+    }
+    finally {
+      lease.release();
+    }
+  }
+
+  private void changeWorkBasket(String caseId, String newWb, Lease lease) {
     setup(caseId);
 
     // update process info
@@ -81,8 +92,8 @@ public final class Wms {
           }
 
           if (newWb.equals(tbcSlaWb) == false) {
-            if ((slad != null) && (slaQm != null)) {
-              Utils.enqueueWorkBasketMilestones(pc, SlaMilestoneSetupOn.work_basket_entry, newWb, slad, slaQm);
+            if ((slaMilestones != null) && (slaQm != null)) {
+              Utils.enqueueWorkBasketMilestones(pc, SlaMilestoneSetupOn.work_basket_entry, newWb, slaMilestones, slaQm);
             }
           }
         }
@@ -94,11 +105,11 @@ public final class Wms {
     }
 
     // write audit log
-    Utils.writeAuditLog(dao, pi, null, null, "Wms");
+    Utils.writeAuditLog(lease.getDao(), pi, null, null, "Wms");
 
     // process info
     Document d = pi.getDocument();
-    dao.write(CONSTS_FLOWRET.DAO.PROCESS_INFO + CONSTS_FLOWRET.DAO.SEP + pi.getCaseId(), d);
+    lease.getDao().write(CONSTS_FLOWRET.DAO.PROCESS_INFO + CONSTS_FLOWRET.DAO.SEP + caseId, d);
   }
 
   private void setup(String caseId) {
@@ -111,11 +122,10 @@ public final class Wms {
     }
 
     // read the process definition and get process info
-    pd = Utils.getProcessDefinition(d);
+    pd = DefinitionStore.getProcessDefinition(dao, caseId, d);
     pi = Utils.getProcessInfo(dao, caseId, pd);
 
-    key = CONSTS_FLOWRET.DAO.JOURNEY_SLA + CONSTS_FLOWRET.DAO.SEP + caseId;
-    slad = dao.read(key);
+    slaMilestones = DefinitionStore.getSlaMilestones(dao, caseId, d);
   }
 
   public String getPendWorkbasket(String caseId) {
@@ -21,8 +21,6 @@ import com.americanexpress.unify.jdocs.JDocument;
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.HashMap;
-import java.util.Map;
 
 /*
  * @author Deepak Arora
@@ -30,7 +28,6 @@ import java.util.Map;
 public class FileDao implements FlowretDao {
 
   private String filePath = null;
-  private Map<String, Long> counters = new HashMap<>();
 
   public FileDao(String filePath) {
     this.filePath = filePath;
@@ -72,18 +69,72 @@ public class FileDao implements FlowretDao {
     return d;
   }
 
+  // counters are kept as documents in the same directory so that they carry on from where they were when the
+  // directory is used again. The class lock makes the increment atomic across all instances in this JVM
   @Override
-  public synchronized long incrCounter(String key) {
-    Long val = counters.get(key);
-    if (val == null) {
-      val = 0L;
-      counters.put(key, val);
+  public long incrCounter(String key) {
+    synchronized (FileDao.class) {
+      Document d = read(key);
+      long val = (d == null) ? 0 : d.getLong("$.counter") + 1;
+      d = new JDocument();
+      d.setLong("$.counter", val);
+      write(key, d);
+      return val;
     }
-    else {
-      val = val + 1;
-      counters.put(key, val);
+  }
+
+  // leases are kept as documents in the same directory. The class lock makes the check and update atomic across
+  // all instances in this JVM which is enough for tests. A shared data store would use a conditional update instead
+  @Override
+  public long acquireLease(String key, String owner, long ttlMs) {
+    synchronized (FileDao.class) {
+      long now = System.currentTimeMillis();
+      Document d = read(key);
+      long token = 0;
+      if (d != null) {
+        token = d.getLong("$.lease.token");
+        boolean isHeld = d.getLong("$.lease.expires_at") > now;
+        if (d.getString("$.lease.owner").equals(owner)) {
+          d.setLong("$.lease.expires_at", now + ttlMs);
+          write(key, d);
+          return token;
+        }
+        if (isHeld) {
+          return -1;
+        }
+      }
+
+      d = new JDocument();
+      d.setString("$.lease.owner", owner);
+      d.setLong("$.lease.token", token + 1);
+      d.setLong("$.lease.expires_at", now + ttlMs);
+      write(key, d);
+      return token + 1;
+    }
+  }
+
+  @Override
+  public void releaseLease(String key, String owner, long token) {
+    synchronized (FileDao.class) {
+      Document d = read(key);
+      if ((d != null) && d.getString("$.lease.owner").equals(owner) && (d.getLong("$.lease.token") == token)) {
+        // the token is kept so that the next one issued is higher
+        d.setLong("$.lease.expires_at", 0L);
+        write(key, d);
+      }
+    }
+  }
+
+  @Override
+  public boolean write(String key, Document d, String leaseKey, long token) {
+    synchronized (FileDao.class) {
+      Document ld = read(leaseKey);
+      if ((ld == null) || (ld.getLong("$.lease.token") != token)) {
+        return false;
+      }
+      write(key, d);
+      return true;
     }
-    return val;
   }
 
   public void delete(String key) {
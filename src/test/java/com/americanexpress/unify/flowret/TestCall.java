@@ -0,0 +1,46 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+import com.americanexpress.unify.jdocs.BaseUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * @author Deepak Arora
+ */
+public class TestCall implements InvokableCall {
+
+  private ProcessContext pc = null;
+
+  public TestCall(ProcessContext pc) {
+    this.pc = pc;
+  }
+
+  @Override
+  public List<ChildCase> executeCall() {
+    // start 5 child cases with ids derived from the parent case id so that they are the same on every invocation
+    String json = BaseUtils.getResourceAsString(TestCall.class, "/flowret/test_call_child.json");
+    List<ChildCase> list = new ArrayList<>();
+    for (int i = 1; i <= 5; i++) {
+      ProcessVariables pvs = new ProcessVariables();
+      pvs.setValue("child_index", ProcessVariableType.INTEGER, i);
+      list.add(new ChildCase(pc.getCaseId() + "_child_" + i, json, pvs, null));
+    }
+    return list;
+  }
+
+}
@@ -23,12 +23,18 @@ public class TestComponentFactory implements ProcessComponentFactory {
   public Object getObject(ProcessContext pc) {
     Object o = null;
 
-    if ((pc.getCompType() == UnitType.S_ROUTE) || (pc.getCompType() == UnitType.P_ROUTE) || (pc.getCompType() == UnitType.P_ROUTE_DYNAMIC)) {
+    if ((pc.getCompType() == UnitType.S_ROUTE) || (pc.getCompType() == UnitType.P_ROUTE) || (pc.getCompType() == UnitType.P_ROUTE_DYNAMIC) || (pc.getCompType() == UnitType.P_ROUTE_FOREACH)) {
       o = new TestRule(pc);
     }
     else if (pc.getCompType() == UnitType.STEP) {
       o = new TestStep(pc);
     }
+    else if (pc.getCompType() == UnitType.STREAM) {
+      o = new TestStream(pc);
+    }
+    else if (pc.getCompType() == UnitType.CALL) {
+      o = new TestCall(pc);
+    }
 
     return o;
   }
@@ -15,12 +15,22 @@
 package com.americanexpress.unify.flowret;
 
 import com.americanexpress.unify.jdocs.BaseUtils;
+import com.americanexpress.unify.jdocs.Document;
+import com.americanexpress.unify.jdocs.JDocument;
 import com.americanexpress.unify.jdocs.UnifyException;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /*
  * @author Deepak Arora
@@ -52,6 +62,30 @@ public class TestFlowret {
     rts = Flowret.instance().getRunTimeService(dao, factory, handler, sqm);
   }
 
+  private static Document getProcessInfo(FlowretDao dao, String caseId) {
+    return dao.read(CONSTS_FLOWRET.DAO.PROCESS_INFO + CONSTS_FLOWRET.DAO.SEP + caseId);
+  }
+
+  private static String getProcessVariable(Document d, String name) {
+    for (ProcessVariable pv : Utils.getProcessVariablesFromProcessInfo(d)) {
+      if (pv.getName().equals(name)) {
+        return pv.getValueAsString();
+      }
+    }
+    return null;
+  }
+
+  // waits for a case being run on another thread to complete and returns its process info
+  private static Document waitForCompletion(FlowretDao dao, String caseId, long timeoutMs) throws InterruptedException {
+    long end = System.currentTimeMillis() + timeoutMs;
+    Document d = getProcessInfo(dao, caseId);
+    while ((Boolean.TRUE.equals(d.getBoolean("$.process_info.is_complete")) == false) && (System.currentTimeMillis() < end)) {
+      Thread.sleep(100);
+      d = getProcessInfo(dao, caseId);
+    }
+    return d;
+  }
+
   private static void runJourney(String journey) {
     try {
       String json = BaseUtils.getResourceAsString(TestFlowret.class, "/flowret/" + journey + ".json");
@@ -93,4 +127,499 @@ public class TestFlowret {
     runJourney("test_persist");
   }
 
+  @Test
+  protected void testDataflow() {
+    init(new FileDao(dirPath), new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager());
+    runJourney("test_dataflow");
+  }
+
+  @Test
+  protected void testForEach() {
+    init(new FileDao(dirPath), new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager());
+    runJourney("test_foreach");
+  }
+
+  @Test
+  protected void testStream() {
+    init(new FileDao(dirPath), new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager());
+    runJourney("test_stream");
+  }
+
+  @Test
+  protected void testStreamSmallPool() {
+    // with a single thread, the consumers which cannot get one are run once the producer is done
+    Flowret.close();
+    Flowret.init(1, 30000, "-");
+    try {
+      init(new FileDao(dirPath), new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager());
+      runJourney("test_stream");
+    }
+    finally {
+      Flowret.close();
+      Flowret.init(10, 30000, "-");
+    }
+  }
+
+  @Test
+  protected void testCall() throws InterruptedException {
+    // the last child case pends for an approval. Once approved, it completes and resumes the parent case
+    FileDao dao = new FileDao(dirPath);
+    dao.delete("call_1");
+    for (int i = 1; i <= 5; i++) {
+      dao.delete("call_1_child_" + i);
+    }
+    init(dao, new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager());
+    String json = BaseUtils.getResourceAsString(TestFlowret.class, "/flowret/test_call.json");
+    rts.startCase("call_1", json, null, null);
+    assertEquals(false, getProcessInfo(dao, "call_1").getBoolean("$.process_info.is_complete"));
+
+    ProcessVariables pvs = new ProcessVariables();
+    pvs.setValue("approved", ProcessVariableType.BOOLEAN, true);
+    rts.resumeCase("call_1_child_5", pvs);
+    Document d = waitForCompletion(dao, "call_1", 10000);
+    assertEquals(true, d.getBoolean("$.process_info.is_complete"));
+
+    // the variables set by the child cases are merged but not the copies of the variables they were started with
+    assertEquals("done", getProcessVariable(d, "child_5_status"));
+    assertNull(getProcessVariable(d, "child_index"));
+  }
+
+  @Test
+  protected void testRetry() {
+    init(new FileDao(dirPath), new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager());
+    runJourney("test_retry");
+  }
+
+  @Test
+  protected void testCompensate() {
+    init(new FileDao(dirPath), new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager());
+    runJourney("test_compensate");
+  }
+
+  @Test
+  protected void testBranchDispatch() {
+    // the branches of the for each route are run by the branch worker
+    FileDao dao = new FileDao(dirPath);
+    InMemoryBranchDispatcher dispatcher = new InMemoryBranchDispatcher();
+    Flowret.instance().startBranchWorker(dispatcher, dao, new TestComponentFactory(), new TestHandler(), null, 3);
+    Flowret.instance().setBranchDispatcher(dispatcher);
+    try {
+      init(dao, new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager());
+      runJourney("test_foreach");
+    }
+    finally {
+      Flowret.instance().setBranchDispatcher(null);
+      Flowret.instance().stopBranchWorker();
+    }
+  }
+
+  @Test
+  protected void testBranchTimeout() {
+    // no branch worker is running and so the branches pend once the branch timeout expires
+    FileDao dao = new FileDao(dirPath);
+    dao.delete("branch_timeout_1");
+    InMemoryBranchDispatcher dispatcher = new InMemoryBranchDispatcher();
+    Flowret.instance().setBranchDispatcher(dispatcher);
+    Flowret.instance().setBranchTimeout(500);
+    try {
+      init(dao, new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager());
+      String json = BaseUtils.getResourceAsString(TestFlowret.class, "/flowret/test_foreach.json");
+      rts.startCase("branch_timeout_1", json, null, null);
+      Document d = getProcessInfo(dao, "branch_timeout_1");
+      assertEquals(false, d.getBoolean("$.process_info.is_complete"));
+      assertEquals(false, d.getString("$.process_info.pend_exec_path").isEmpty());
+
+      // the work items which timed out can no longer be claimed by a branch worker
+      assertEquals(true, dispatcher.getBacklog() > 0);
+      for (Document work = dispatcher.take(0); work != null; work = dispatcher.take(0)) {
+        assertEquals(false, BranchWorker.claim(dao, work.getString("$.branch_work.id")));
+      }
+    }
+    finally {
+      Flowret.instance().setBranchDispatcher(null);
+      Flowret.instance().setBranchTimeout(240000);
+    }
+  }
+
+  @Test
+  protected void testLease() throws InterruptedException {
+    // two nodes running against the same data store
+    FileDao dao = new FileDao(dirPath);
+    String key = CONSTS_FLOWRET.DAO.LEASE + CONSTS_FLOWRET.DAO.SEP + "lease_1";
+    dao.delete("lease_1");
+    init(dao, new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager());
+    String json = BaseUtils.getResourceAsString(TestFlowret.class, "/flowret/test_signal.json");
+    rts.startCase("lease_1", json, null, null);
+
+    // node 2 holds the lease and so node 1 cannot resume the case
+    long token = dao.acquireLease(key, "node_2", 100);
+    try {
+      rts.resumeCase("lease_1");
+    }
+    catch (UnifyException e) {
+      System.out.println("Resume refused -> " + e.getMessage());
+    }
+
+    // node 2 stalls till its lease expires and the case is resumed by node 1. Node 2 can no longer write
+    Thread.sleep(200);
+    rts.resumeCase("lease_1");
+    boolean isWritten = dao.write(CONSTS_FLOWRET.DAO.PROCESS_INFO + CONSTS_FLOWRET.DAO.SEP + "lease_1", new JDocument(), key, token);
+    System.out.println("Write with expired lease -> " + isWritten);
+  }
+
+  @Test
+  protected void testLeaseRenewal() throws InterruptedException {
+    FileDao dao = new FileDao(dirPath);
+    String key = CONSTS_FLOWRET.DAO.LEASE + CONSTS_FLOWRET.DAO.SEP + "lease_2";
+    String auditKey = CONSTS_FLOWRET.DAO.AUDIT_LOG + CONSTS_FLOWRET.DAO.SEP + "lease_2_test";
+    init(dao, new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager());
+    Flowret.instance().setLeaseTimeout(300);
+    try {
+      // a write made after a third of the lease timeout renews the lease and so node 2 cannot take it over once the
+      // original lease would have expired
+      Lease lease = Lease.acquire(dao, "lease_2");
+      Thread.sleep(150);
+      lease.getDao().write(auditKey, new JDocument());
+      Thread.sleep(200);
+      assertEquals(-1L, dao.acquireLease(key, "node_2", 100));
+
+      // once the lease has expired and been taken over, every document of the case written by node 1 is fenced
+      Thread.sleep(400);
+      long token = dao.acquireLease(key, "node_2", 100);
+      assertEquals(true, token > 0);
+      UnifyException e = assertThrows(UnifyException.class, () -> lease.getDao().write(auditKey, new JDocument()));
+      assertEquals("flowret_err_17", e.getErrorCode());
+      dao.releaseLease(key, "node_2", token);
+    }
+    finally {
+      Flowret.instance().setLeaseTimeout(300000);
+    }
+  }
+
+  @Test
+  protected void testCaseShards() {
+    Flowret.instance().startCaseShards(4);
+    try {
+      init(new FileDao(dirPath), new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager());
+      runJourney("parallel_test");
+    }
+    finally {
+      Flowret.instance().stopCaseShards();
+    }
+  }
+
+  @Test
+  protected void testWatchdog() {
+    // the components of the compensation journey take long enough to be reported as slow units
+    Watchdog watchdog = Flowret.instance().startWatchdog(finding -> System.out.println("Watchdog finding -> " + finding), 100, 50);
+    try {
+      init(new FileDao(dirPath), new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager());
+      runJourney("test_compensate");
+      System.out.println("Slow units -> " + watchdog.getSlowUnits() + ", starvations -> " + watchdog.getStarvations());
+    }
+    finally {
+      Flowret.instance().stopWatchdog();
+    }
+  }
+
+  @Test
+  protected void testWatchdogNestedWaits() throws Exception {
+    // a pool thread waiting on the branches of a route nested in another route it is waiting on is blocked only once
+    Watchdog watchdog = Flowret.instance().startWatchdog(null, 100, 60000);
+    try {
+      String json = BaseUtils.getResourceAsString(TestFlowret.class, "/flowret/parallel_test.json");
+      Route route = (Route)Flowret.instance().getDefinitionCache().getProcessDefinition(new JDocument(json)).getUnit("route_1");
+      int blocked = Flowret.instance().getExecutorService().submit(() -> {
+        Watchdog.Activity outer = Watchdog.enterWait("watchdog_1", ".", route);
+        Watchdog.Activity inner = Watchdog.enterWait("watchdog_1", ".route_1.1.", route);
+        try {
+          watchdog.check();
+          return watchdog.getBlockedThreads();
+        }
+        finally {
+          Watchdog.exit(inner);
+          Watchdog.exit(outer);
+        }
+      }).get();
+      assertEquals(1, blocked);
+    }
+    finally {
+      Flowret.instance().stopWatchdog();
+    }
+  }
+
+  @Test
+  protected void testBudget() {
+    // the case pends in the budget_exceeded work basket every 3 units and is resumed till it completes
+    init(new FileDao(dirPath), new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager());
+    runJourney("test_budget");
+  }
+
+  @Test
+  protected void testBudgetBranches() {
+    // the second route would take the branches started past the budget and so the case pends at it
+    FileDao dao = new FileDao(dirPath);
+    dao.delete("budget_branches_1");
+    init(dao, new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager());
+    String json = BaseUtils.getResourceAsString(TestFlowret.class, "/flowret/test_budget_branches.json");
+    ProcessContext pc = rts.startCase("budget_branches_1", json, null, null);
+    assertEquals(true, pc.isBudgetExceeded());
+    assertEquals(2, pc.getBranchesStarted());
+    assertEquals("route2", pc.getStepName());
+
+    // the resumed run has a fresh budget and so the case completes
+    rts.resumeCase("budget_branches_1");
+    assertEquals(true, getProcessInfo(dao, "budget_branches_1").getBoolean("$.process_info.is_complete"));
+  }
+
+  @Test
+  protected void testDefinitionCache() {
+    // the journey is parsed on start and then taken from the cache on each resume
+    Flowret.instance().setDefinitionCacheSize(16);
+    init(new FileDao(dirPath), new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager());
+    runJourney("test_journey");
+    DefinitionCache cache = Flowret.instance().getDefinitionCache();
+    System.out.println("Cache hits -> " + cache.getHits() + ", misses -> " + cache.getMisses() + ", parse ms saved -> " + cache.getParseMsSaved());
+  }
+
+  @Test
+  protected void testDefinitionsByReference() {
+    // the journey and sla are written once as definitions and the case only stores a reference to them
+    Flowret.instance().setDefinitionsByReference(true);
+    try {
+      init(new FileDao(dirPath), new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager());
+      runJourney("test_journey");
+    }
+    finally {
+      Flowret.instance().setDefinitionsByReference(false);
+    }
+  }
+
+  @Test
+  protected void testCompiledDefinition() {
+    // the units are compiled into a graph with the next units and the joins of parallel routes resolved
+    String json = BaseUtils.getResourceAsString(TestFlowret.class, "/flowret/parallel_test.json");
+    ProcessDefinition pd = Utils.getProcessDefinition(new JDocument(json));
+    for (int i = 0; i < pd.getUnitCount(); i++) {
+      Unit unit = pd.getUnit(i);
+      Unit next = unit.getNextUnit();
+      String join = (unit instanceof Route) && (((Route)unit).getJoin() != null) ? ((Route)unit).getJoin().getName() : "";
+      System.out.println(unit.getId() + " -> " + unit.getName() + ", next -> " + ((next == null) ? "" : next.getName()) + ", join -> " + join);
+    }
+  }
+
+  @Test
+  protected void testExpression() {
+    // the routes decide their branches using expressions over the process variables instead of components
+    init(new FileDao(dirPath), new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager());
+    runJourney("test_expression");
+
+    ProcessVariables pvs = new ProcessVariables();
+    pvs.setValue("amount", ProcessVariableType.LONG, 500L);
+    pvs.setValue("has_car", ProcessVariableType.BOOLEAN, false);
+    System.out.println(Expression.compile("amount > 1000 ? 'high' : 'low'").getBranches(pvs));
+    System.out.println(Expression.compile("[has_car ? 'car' : null, has_hotel == null ? 'hotel' : null, 'flight']").getBranches(pvs));
+  }
+
+  @Test
+  protected void testDefinitionRegistry() {
+    // the journey is registered once and the case is started by name without the journey being parsed again
+    DefinitionRegistry registry = Flowret.instance().startDefinitionRegistry(null);
+    try {
+      String json = BaseUtils.getResourceAsString(TestFlowret.class, "/flowret/test_journey.json");
+      String sla = BaseUtils.getResourceAsString(TestFlowret.class, "/flowret/test_journey_sla.json");
+      registry.register(json, sla);
+      System.out.println("Versions -> " + registry.getVersions("test_journey") + ", latest -> " + registry.getLatestVersion("test_journey"));
+
+      FileDao dao = new FileDao(dirPath);
+      dao.delete("registry_1");
+      init(dao, new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager());
+      assertNotNull(rts.startCaseByName("registry_1", "test_journey", null, null));
+      assertNotNull(dao.read(CONSTS_FLOWRET.DAO.JOURNEY + CONSTS_FLOWRET.DAO.SEP + "registry_1"));
+    }
+    finally {
+      Flowret.instance().stopDefinitionRegistry();
+    }
+  }
+
+  @Test
+  protected void testExecutionPlan() {
+    // the plan and the warnings found when the journey is read
+    String[] journeys = {"test_journey", "parallel_test", "parallel_dyn_test", "test_foreach"};
+    for (String journey : journeys) {
+      String json = BaseUtils.getResourceAsString(TestFlowret.class, "/flowret/" + journey + ".json");
+      ExecutionPlan plan = Flowret.instance().getExecutionPlan(json);
+      System.out.println(journey + " -> max fan out -> " + plan.getMaxFanOut() + ", max nesting depth -> " + plan.getMaxNestingDepth() + ", warnings -> " + plan.getWarnings());
+    }
+  }
+
+  @Test
+  protected void testSymbolTable() {
+    // names read from the process info of a case are replaced by the instances held by the definition
+    String json = BaseUtils.getResourceAsString(TestFlowret.class, "/flowret/parallel_test.json");
+    ProcessDefinition pd = Utils.getProcessDefinition(new JDocument(json));
+    String name = new String("step_3".toCharArray());
+    System.out.println("Same instance -> " + (pd.getSymbols().intern(name) == pd.getUnit("step_3").getName()) + ", symbols -> " + pd.getSymbols().size());
+  }
+
+  @Test
+  protected void testWarmUp() {
+    // the journeys are compiled into the definition cache and each is run through with no op components
+    List<String> journeys = new ArrayList<>();
+    for (String journey : new String[] {"test_journey", "parallel_test", "parallel_dyn_test", "test_foreach"}) {
+      journeys.add(BaseUtils.getResourceAsString(TestFlowret.class, "/flowret/" + journey + ".json"));
+    }
+    WarmUpReport report = Flowret.instance().warmUp(journeys, 2);
+    System.out.println("Warm up -> " + report + ", ready -> " + (Flowret.instance().getWarmUpReport() != null));
+  }
+
+  @Test
+  protected void testWarmUpTimedPause() {
+    // the warm up cases pend at the timed pause but their timers are not handed over to the running timer service
+    FileDao dao = new FileDao(dirPath);
+    TimerService ts = Flowret.instance().startTimerService(dao, new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager(), 2);
+    try {
+      long scheduled = ts.getTimersScheduled();
+      List<String> journeys = new ArrayList<>();
+      journeys.add(BaseUtils.getResourceAsString(TestFlowret.class, "/flowret/test_timer.json"));
+      WarmUpReport report = Flowret.instance().warmUp(journeys, 2);
+      assertEquals(2, report.getCasesRun());
+      assertEquals(0, report.getCasesFailed());
+      assertEquals(scheduled, ts.getTimersScheduled());
+    }
+    finally {
+      Flowret.instance().stopTimerService();
+    }
+  }
+
+  @Test
+  protected void testEphemeral() {
+    FileDao dao = new FileDao(dirPath);
+    init(dao, new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager());
+    runJourney("test_ephemeral");
+
+    // an ephemeral case which pends is not written over a case which already exists
+    dao.delete("ephemeral_1");
+    String json = BaseUtils.getResourceAsString(TestFlowret.class, "/flowret/test_signal.json");
+    rts.startCase("ephemeral_1", json, null, null);
+    UnifyException e = assertThrows(UnifyException.class, () -> rts.startCase("ephemeral_1", json, null, null, true));
+    assertEquals("flowret_err_1", e.getErrorCode());
+  }
+
+  @Test
+  protected void testSignal() {
+    FileDao dao = new FileDao(dirPath);
+    dao.delete("signal_1");
+    init(dao, new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager());
+
+    // the case pends at step1 waiting for the upload message which is then signalled
+    String json = BaseUtils.getResourceAsString(TestFlowret.class, "/flowret/test_signal.json");
+    rts.startCase("signal_1", json, null, null);
+    assertEquals("step1", getProcessInfo(dao, "signal_1").getString("$.process_info.exec_paths[0].step"));
+
+    ProcessVariables pvs = new ProcessVariables();
+    pvs.setValue("doc_id", ProcessVariableType.STRING, "doc_1");
+    assertNotNull(rts.signal("upload_signal_1", pvs));
+    Document d = getProcessInfo(dao, "signal_1");
+    assertEquals(true, d.getBoolean("$.process_info.is_complete"));
+    assertEquals("doc_1", getProcessVariable(d, "doc_id"));
+
+    // the correlation is marked consumed only after the resume has succeeded
+    d = dao.read(CONSTS_FLOWRET.DAO.CORRELATION + CONSTS_FLOWRET.DAO.SEP + "upload_signal_1");
+    assertEquals("consumed", d.getString("$.correlation.status"));
+  }
+
+  @Test
+  protected void testResumeInbox() throws InterruptedException {
+    FileDao dao = new FileDao(dirPath);
+    dao.delete("inbox_1");
+    init(dao, new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager());
+
+    // the case pends at step1 and the resume requests, persisted before the inbox is started, are recovered and
+    // merged into a single resume
+    String json = BaseUtils.getResourceAsString(TestFlowret.class, "/flowret/test_signal.json");
+    rts.startCase("inbox_1", json, null, null);
+    for (int i = 0; i < 3; i++) {
+      ProcessVariables pvs = new ProcessVariables();
+      pvs.setValue("request", ProcessVariableType.INTEGER, i);
+      rts.enqueueResume("inbox_1", pvs);
+    }
+
+    ResumeInbox inbox = Flowret.instance().startResumeInbox(dao, new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager(), 2);
+    try {
+      for (int i = 0; (i < 50) && (inbox.getBacklog() > 0); i++) {
+        Thread.sleep(100);
+      }
+      assertEquals(0, inbox.getBacklog());
+    }
+    finally {
+      Flowret.instance().stopResumeInbox();
+    }
+
+    Document d = getProcessInfo(dao, "inbox_1");
+    assertEquals(true, d.getBoolean("$.process_info.is_complete"));
+    assertEquals("2", getProcessVariable(d, "request"));
+  }
+
+  @Test
+  protected void testTimer() throws InterruptedException {
+    FileDao dao = new FileDao(dirPath);
+    dao.delete("timer_1");
+    dao.delete("timer_2");
+    init(dao, new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager());
+    Flowret.instance().startTimerService(dao, new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager(), 2);
+    try {
+      // the case pends at the pause and is resumed by the timer service
+      String json = BaseUtils.getResourceAsString(TestFlowret.class, "/flowret/test_timer.json");
+      rts.startCase("timer_1", json, null, null);
+      assertEquals(true, waitForCompletion(dao, "timer_1", 5000).getBoolean("$.process_info.is_complete"));
+
+      // another node holds the lease of the case when the timer fires. The timer stays pending and fires again
+      rts.startCase("timer_2", json, null, null);
+      dao.acquireLease(CONSTS_FLOWRET.DAO.LEASE + CONSTS_FLOWRET.DAO.SEP + "timer_2", "node_2", 1500);
+      assertEquals(true, waitForCompletion(dao, "timer_2", 10000).getBoolean("$.process_info.is_complete"));
+    }
+    finally {
+      Flowret.instance().stopTimerService();
+    }
+  }
+
+  @Test
+  protected void testScheduleCase() throws InterruptedException {
+    // cases are scheduled from several threads while the timer service is not running and so are started from
+    // the timer index when it is started. The case ids are unique to the run as scheduled cases cannot be deleted
+    FileDao dao = new FileDao(dirPath);
+    init(dao, new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager());
+    String json = BaseUtils.getResourceAsString(TestFlowret.class, "/flowret/test_journey.json");
+    String prefix = "scheduled_" + System.currentTimeMillis() + "_";
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      int first = t * 5;
+      Thread thread = new Thread(() -> {
+        for (int i = first; i < first + 5; i++) {
+          rts.scheduleCase(prefix + i, json, null, null, Instant.now().plusSeconds(1));
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Flowret.instance().startTimerService(dao, new TestComponentFactory(), new TestHandler(), new TestSlaQueueManager(), 2, 10);
+    try {
+      for (int i = 0; i < 20; i++) {
+        String caseId = prefix + i;
+        for (int j = 0; (j < 100) && (getProcessInfo(dao, caseId) == null); j++) {
+          Thread.sleep(100);
+        }
+        assertNotNull(getProcessInfo(dao, caseId), "Scheduled case not started -> " + caseId);
+      }
+    }
+    finally {
+      Flowret.instance().stopTimerService();
+    }
+  }
+
 }
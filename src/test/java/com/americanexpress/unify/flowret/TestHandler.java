@@ -26,6 +26,11 @@ public class TestHandler implements EventHandler {
     if (event == EventType.ON_PROCESS_PEND) {
       System.out.println("Pend workbasket -> " + pc.getPendWorkBasket());
     }
+
+    if ((event == EventType.ON_PROCESS_COMPLETE) && (pc.getParentCaseId() != null)) {
+      // the parent case is resumed by Flowret once the last of its child cases completes
+      System.out.println("Child case completed -> " + pc.getCaseId() + ", parent case id -> " + pc.getParentCaseId());
+    }
   }
 
 }
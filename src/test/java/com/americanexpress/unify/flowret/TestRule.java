@@ -61,6 +61,15 @@ public class TestRule implements InvokableRoute {
           break;
         }
 
+        // for for each use case only. Here branches are the items to fan out over
+        if (name.equalsIgnoreCase("foreach_items")) {
+          for (int i = 1; i <= 10; i++) {
+            branches.add("item_" + i);
+          }
+          resp = new RouteResponse(UnitResponseType.OK_PROCEED, branches, null);
+          break;
+        }
+
         {
           branches.add("no");
           resp = new RouteResponse(UnitResponseType.OK_PROCEED, branches, null);
@@ -14,8 +14,11 @@
 
 package com.americanexpress.unify.flowret;
 
+import com.americanexpress.unify.jdocs.ErrorTuple;
+
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /*
  * @author Deepak Arora
@@ -26,6 +29,7 @@ public class TestStep implements InvokableStep {
   private ProcessContext pc = null;
   private static Map<String, TestData[]> responses = new HashMap<>();
   private static Map<String, Integer> counter = new HashMap<>();
+  private static AtomicInteger flakyCounter = new AtomicInteger(0);
 
   static {
     setup();
@@ -73,6 +77,73 @@ public class TestStep implements InvokableStep {
       }
 
 
+      if (name.equalsIgnoreCase("process_chunk")) {
+        pc.addResult(pc.getExecPathName() + " processed " + pc.getItems().size() + " items");
+        response = new StepResponse(UnitResponseType.OK_PROCEED, null, null);
+        break;
+      }
+
+      if (name.equalsIgnoreCase("flaky_comp")) {
+        // fails twice with a retryable error and then succeeds
+        if (flakyCounter.incrementAndGet() % 3 != 0) {
+          ErrorTuple et = new ErrorTuple("flaky_err", "Service unavailable", "", true);
+          response = new StepResponse(UnitResponseType.ERROR_PEND, null, "flaky_wb", et);
+        }
+        else {
+          response = new StepResponse(UnitResponseType.OK_PROCEED, null, null);
+        }
+        break;
+      }
+
+      if (name.equalsIgnoreCase("wait_for_upload")) {
+        // pend till the document upload message for this case is signalled
+        response = new StepResponse(UnitResponseType.OK_PEND, null, "upload_wb");
+        response.setCorrelationKey("upload_" + pc.getCaseId());
+        break;
+      }
+
+      if (name.equalsIgnoreCase("raise_rollback")) {
+        response = new StepResponse(UnitResponseType.OK_PROCEED, "rollback", null);
+        break;
+      }
+
+      if (name.equalsIgnoreCase("undo_comp")) {
+        // undoing a booking takes a while
+        try {
+          Thread.sleep(200);
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        System.out.println("Compensated step -> " + pc.getStepName() + ", execution path -> " + pc.getExecPathName());
+        response = new StepResponse(UnitResponseType.OK_PROCEED, null, null);
+        break;
+      }
+
+      if (name.equalsIgnoreCase("child_comp")) {
+        pc.getProcessVariables().setValue("child_" + pc.getProcessVariables().getInteger("child_index") + "_status", ProcessVariableType.STRING, "done");
+        response = new StepResponse(UnitResponseType.OK_PROCEED, null, null);
+        break;
+      }
+
+      if (name.equalsIgnoreCase("child_approval")) {
+        // the last child case waits for an approval
+        ProcessVariables pvs = pc.getProcessVariables();
+        if ((pvs.getInteger("child_index") == 5) && (pvs.getBoolean("approved") == null)) {
+          response = new StepResponse(UnitResponseType.OK_PEND, null, "approval_wb");
+        }
+        else {
+          response = new StepResponse(UnitResponseType.OK_PROCEED, null, null);
+        }
+        break;
+      }
+
+      if (name.equalsIgnoreCase("collect_results")) {
+        System.out.println("Results -> " + pc.getResults());
+        response = new StepResponse(UnitResponseType.OK_PROCEED, null, null);
+        break;
+      }
+
       //      if (name.equalsIgnoreCase("comp30")) {
       //        int temp = RandomGen.get(1, 4);
       //        if (temp <= 3) {
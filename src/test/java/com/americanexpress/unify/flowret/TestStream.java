@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 American Express Travel Related Services Company, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.americanexpress.unify.flowret;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * @author Deepak Arora
+ */
+public class TestStream implements InvokableProducer, InvokableConsumer {
+
+  private static AtomicInteger consumed = new AtomicInteger(0);
+  private ProcessContext pc = null;
+
+  public TestStream(ProcessContext pc) {
+    this.pc = pc;
+  }
+
+  @Override
+  public StepResponse produce(StreamChannel channel) {
+    // emulate fetching 5 pages of 20 records each
+    for (int page = 1; page <= 5; page++) {
+      for (int i = 1; i <= 20; i++) {
+        if (channel.put("page_" + page + "_record_" + i) == false) {
+          return new StepResponse(UnitResponseType.OK_PROCEED, null, null);
+        }
+      }
+    }
+    return new StepResponse(UnitResponseType.OK_PROCEED, null, null);
+  }
+
+  @Override
+  public StepResponse consume(String item) {
+    int count = consumed.incrementAndGet();
+    if (count % 25 == 0) {
+      System.out.println("Consumed -> " + count + " records");
+    }
+    return new StepResponse(UnitResponseType.OK_PROCEED, null, null);
+  }
+
+}